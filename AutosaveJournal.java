@@ -0,0 +1,543 @@
+package ca.utoronto.utm.paint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an append-only journal of the edits to a PaintModel, so a drawing
+ * can be recovered after a crash. The journal observes the model, and for
+ * each change appends a record of just that change: a new command, the new
+ * state of a changed circle or rectangle or of a simplified squiggle, or the
+ * points added to a squiggle.
+ * So the cost of an edit does not depend on the size of the drawing.
+ *
+ * Records are encoded on the JavaFX thread into a pending buffer, which a
+ * single background thread drains into the file, so a burst of edits costs
+ * one write. That thread also forces the journal to disk every SYNC_MILLIS.
+ * When the journal has grown well past the size of the drawing, or the
+ * whole model changed at once, it is compacted: a snapshot of the drawing
+ * replaces both the journal and any pending records, and the background
+ * thread writes it out as a new journal.
+ *
+ * The journal starts with JOURNAL_MAGIC and BinaryPaintFormat.VERSION,
+ * followed by records, each a record type byte and the command's id:
+ *
+ * ADD     id, a shape record of BinaryPaintFormat, for a command on top
+ * INSERT  id, the id of the command under it plus one, or 0 if it goes at
+ *         the bottom, then a shape record, for a command put under others
+ * UPDATE  id, a shape record with the command's new state
+ * APPEND  id, the number of points added, then for each its x and y minus
+ *         the previous point's, starting from the squiggle's last point
+ * REMOVE  id
+ *
+ * Ids are given out in the order commands are added. A command put back
+ * in the middle of the drawing, as by undoing a Cut, is journaled by
+ * where it goes, so that costs no more than adding one on top. A journal
+ * cut short by a crash is replayed up to its last complete record.
+ */
+class AutosaveJournal implements Observer {
+	static final byte[] JOURNAL_MAGIC = { 'P', 'N', 'T', 'J' };
+
+	static final int ADD = 1;
+	static final int UPDATE = 2;
+	static final int APPEND = 3;
+	static final int REMOVE = 4;
+	static final int INSERT = 5;
+
+	private static final long SYNC_MILLIS = 1000; // how often the journal is forced to disk
+	private static final long MIN_COMPACT_BYTES = 1 << 20; // journal growth before a compaction is considered
+
+	/**
+	 * What the journal has recorded about a command.
+	 */
+	private static class Entry {
+		int id;
+		int journaledPoints; // for a squiggle, the number of its points in the journal
+	}
+
+	private File file;
+	private ScheduledExecutorService writer; // the thread all file access happens on
+
+	// Used on the JavaFX thread
+	private PaintModel paintModel; // the model being journaled, or null
+	private IdentityHashMap<PaintCommand, Entry> entries = new IdentityHashMap<PaintCommand, Entry>();
+	private int nextId = 0;
+	private long appendedBytes = 0; // bytes appended since the last compaction
+
+	// Shared by both threads, guarded by pending
+	private ByteArrayOutputStream pending = new ByteArrayOutputStream(); // records not yet written
+	private BinarySaveVisitor recordWriter = new BinarySaveVisitor(this.pending);
+	private List<PaintCommand> pendingSnapshot; // a snapshot to write before the pending records, or null
+	private boolean drainScheduled = false; // whether a drain is queued on the writer thread
+
+	// Used on the writer thread
+	private FileChannel channel; // the open journal, or null
+	private boolean unsynced = false; // whether anything was written since the last force
+	private volatile long snapshotBytes = 0; // size of the last compacted journal
+
+	/**
+	 * @param file where to keep the journal
+	 */
+	AutosaveJournal(File file) {
+		this.file = file;
+		this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "Autosave");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.writer.scheduleWithFixedDelay(this::sync, SYNC_MILLIS, SYNC_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return the journal in the user's home directory
+	 */
+	static File getDefaultFile() {
+		return new File(System.getProperty("user.home"), ".paint-autosave.pntj");
+	}
+
+	/**
+	 * Start journaling paintModel, in place of any model journaled before.
+	 * The journal begins as a snapshot of paintModel.
+	 */
+	void start(PaintModel paintModel) {
+		if (this.paintModel != null) {
+			this.paintModel.deleteObserver(this);
+		}
+		this.paintModel = paintModel;
+		this.paintModel.addObserver(this);
+		this.compact();
+	}
+
+	/**
+	 * Stop journaling and delete the journal, as there is nothing left to
+	 * recover. Waits for the journal to be deleted.
+	 */
+	void stop() {
+		if (this.paintModel == null) {
+			return;
+		}
+		this.paintModel.deleteObserver(this);
+		this.paintModel = null;
+		this.entries.clear();
+		synchronized (this.pending) {
+			this.pending.reset();
+			this.pendingSnapshot = null;
+		}
+		try {
+			this.writer.submit(() -> {
+				this.closeChannel();
+				this.file.delete();
+				return null;
+			}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+		}
+	}
+
+	/**
+	 * Journal the change to the model that arg describes.
+	 */
+	@Override
+	public void update(Observable o, Object arg) {
+		if (!(arg instanceof PaintChange)) {
+			this.compact(); // the whole model may have changed
+			return;
+		}
+		PaintChange change = (PaintChange) arg;
+		PaintCommand command = change.command;
+		if (command == null) {
+			return; // only the selection changed
+		}
+		if (change.commands != null) {
+			this.added(change.commands, change.index);
+			return;
+		}
+		ArrayList<PaintCommand> commands = this.paintModel.getCommands();
+		boolean inserted = !change.removed && change.index >= 0 && change.index < commands.size() - 1; // under others
+		Entry below = inserted && change.index > 0 ? this.entries.get(commands.get(change.index - 1)) : null;
+		if (inserted && change.index > 0 && below == null) {
+			this.compact(); // the command under it is not journaled
+			return;
+		}
+		synchronized (this.pending) {
+			int size = this.pending.size();
+			try {
+				Entry entry = this.entries.get(command);
+				if (change.removed) {
+					if (entry == null) {
+						return;
+					}
+					this.entries.remove(command);
+					this.recordWriter.writeByte(REMOVE);
+					this.recordWriter.writeUnsigned(entry.id);
+				} else if (entry == null) {
+					entry = this.writeNew(command, inserted, below);
+				} else if (command instanceof SquiggleCommand
+						&& ((SquiggleCommand) command).getPointCount() >= entry.journaledPoints) {
+					// Points were added; one simplified away points is written in full below
+					SquiggleCommand squiggleCommand = (SquiggleCommand) command;
+					int n = squiggleCommand.getPointCount();
+					if (n == entry.journaledPoints) {
+						return;
+					}
+					this.recordWriter.writeByte(APPEND);
+					this.recordWriter.writeUnsigned(entry.id);
+					this.recordWriter.writeUnsigned(n - entry.journaledPoints);
+					int last = entry.journaledPoints - 1;
+					int x = last < 0 ? 0 : squiggleCommand.getX(last), y = last < 0 ? 0 : squiggleCommand.getY(last);
+					for (int i = entry.journaledPoints; i < n; i++) {
+						this.recordWriter.writeSigned(squiggleCommand.getX(i) - x);
+						this.recordWriter.writeSigned(squiggleCommand.getY(i) - y);
+						x = squiggleCommand.getX(i);
+						y = squiggleCommand.getY(i);
+					}
+				} else {
+					this.recordWriter.writeByte(UPDATE);
+					this.recordWriter.writeUnsigned(entry.id);
+					command.accept(this.recordWriter);
+				}
+				if (command instanceof SquiggleCommand && !change.removed) {
+					entry.journaledPoints = ((SquiggleCommand) command).getPointCount();
+				}
+				this.recordWriter.flush();
+			} catch (IOException e) {
+				e.printStackTrace(); // a ByteArrayOutputStream does not throw
+			}
+			this.appendedBytes += this.pending.size() - size;
+			this.scheduleDrain();
+		}
+		this.compactIfLong();
+	}
+
+	/**
+	 * Journal commands, added to the model together from index on, which is
+	 * on top or just under the command being drawn.
+	 */
+	private void added(List<PaintCommand> commands, int index) {
+		ArrayList<PaintCommand> all = this.paintModel.getCommands();
+		boolean inserted = index + commands.size() < all.size(); // under others
+		Entry below = inserted && index > 0 ? this.entries.get(all.get(index - 1)) : null;
+		if (inserted && index > 0 && below == null) {
+			this.compact(); // the command under them is not journaled
+			return;
+		}
+		synchronized (this.pending) {
+			int size = this.pending.size();
+			try {
+				for (PaintCommand command : commands) {
+					below = this.writeNew(command, inserted, below);
+				}
+				this.recordWriter.flush();
+			} catch (IOException e) {
+				e.printStackTrace(); // a ByteArrayOutputStream does not throw
+			}
+			this.appendedBytes += this.pending.size() - size;
+			this.scheduleDrain();
+		}
+		this.compactIfLong();
+	}
+
+	/**
+	 * Write the record of command, new to the journal: an ADD, or an INSERT
+	 * if it was inserted above below, or at the bottom if below is null.
+	 * @return its entry
+	 */
+	private Entry writeNew(PaintCommand command, boolean inserted, Entry below) throws IOException {
+		Entry entry = new Entry();
+		entry.id = this.nextId++;
+		this.entries.put(command, entry);
+		this.recordWriter.writeByte(inserted ? INSERT : ADD);
+		this.recordWriter.writeUnsigned(entry.id);
+		if (inserted) {
+			this.recordWriter.writeUnsigned(below == null ? 0 : below.id + 1);
+		}
+		command.accept(this.recordWriter);
+		if (command instanceof SquiggleCommand) {
+			entry.journaledPoints = ((SquiggleCommand) command).getPointCount();
+		}
+		return entry;
+	}
+
+	/**
+	 * Compact the journal if it grew much larger than its last snapshot.
+	 */
+	private void compactIfLong() {
+		if (this.appendedBytes > Math.max(MIN_COMPACT_BYTES, 2 * this.snapshotBytes)) {
+			this.compact();
+		}
+	}
+
+	/**
+	 * Replace the journal with a snapshot of the model. The snapshot is
+	 * taken now and written in the background, before any later record.
+	 */
+	private void compact() {
+		ArrayList<PaintCommand> commands = this.paintModel.getCommands();
+		List<PaintCommand> snapshot = this.paintModel.snapshot();
+		this.entries.clear();
+		for (int i = 0; i < commands.size(); i++) {
+			Entry entry = new Entry();
+			entry.id = i;
+			if (commands.get(i) instanceof SquiggleCommand) {
+				entry.journaledPoints = ((SquiggleCommand) commands.get(i)).getPointCount();
+			}
+			this.entries.put(commands.get(i), entry);
+		}
+		this.nextId = commands.size();
+		this.appendedBytes = 0;
+		synchronized (this.pending) {
+			this.pending.reset(); // the snapshot already has these edits
+			this.pendingSnapshot = snapshot;
+			this.scheduleDrain();
+		}
+	}
+
+	/**
+	 * Wait until everything journaled so far has been written.
+	 */
+	void flush() throws InterruptedException, ExecutionException {
+		this.writer.submit(() -> null).get(); // runs after any drain already queued
+	}
+
+	/**
+	 * Queue a drain on the writer thread, unless one is queued already.
+	 * Call while holding pending.
+	 */
+	private void scheduleDrain() {
+		if (!this.drainScheduled) {
+			this.drainScheduled = true;
+			this.writer.execute(this::drain);
+		}
+	}
+
+	/**
+	 * On the writer thread, write out the pending snapshot, if any, and
+	 * then the pending records.
+	 */
+	private void drain() {
+		List<PaintCommand> snapshot;
+		byte[] records;
+		synchronized (this.pending) {
+			snapshot = this.pendingSnapshot;
+			records = this.pending.toByteArray();
+			this.pendingSnapshot = null;
+			this.pending.reset();
+			this.drainScheduled = false;
+		}
+		if (snapshot != null) {
+			this.writeSnapshot(snapshot);
+		}
+		if (records.length > 0) {
+			this.append(records);
+		}
+	}
+
+	/**
+	 * On the writer thread, write snapshot to a new journal, with one ADD
+	 * record per command, and swap it in for the old one.
+	 */
+	private void writeSnapshot(List<PaintCommand> snapshot) {
+		File temporary = new File(this.file.getPath() + ".tmp");
+		try {
+			try (FileOutputStream out = new FileOutputStream(temporary)) {
+				BinarySaveVisitor snapshotWriter = new BinarySaveVisitor(out);
+				for (byte b : JOURNAL_MAGIC) {
+					snapshotWriter.writeByte(b);
+				}
+				snapshotWriter.writeByte(BinaryPaintFormat.VERSION);
+				for (int i = 0; i < snapshot.size(); i++) {
+					snapshotWriter.writeByte(ADD);
+					snapshotWriter.writeUnsigned(i);
+					snapshot.get(i).accept(snapshotWriter);
+				}
+				snapshotWriter.flush();
+				out.getFD().sync();
+			}
+			this.closeChannel();
+			Files.move(temporary.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			this.snapshotBytes = this.channel.size();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * On the writer thread, append records to the journal.
+	 */
+	private void append(byte[] records) {
+		if (this.channel == null) {
+			return; // the snapshot could not be written, so neither can this
+		}
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(records);
+			while (buffer.hasRemaining()) {
+				this.channel.write(buffer);
+			}
+			this.unsynced = true;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * On the writer thread, force what was appended since the last sync to disk.
+	 */
+	private void sync() {
+		if (this.channel == null || !this.unsynced) {
+			return;
+		}
+		try {
+			this.channel.force(false);
+			this.unsynced = false;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void closeChannel() throws IOException {
+		if (this.channel != null) {
+			this.channel.close();
+			this.channel = null;
+			this.unsynced = false;
+		}
+	}
+
+	/**
+	 * @return whether file holds a journal with at least one command to recover
+	 */
+	static boolean hasRecoverableDrawing(File file) {
+		return file.length() > JOURNAL_MAGIC.length + 1;
+	}
+
+	/**
+	 * Rebuild the drawing recorded in the journal file and load it into
+	 * paintModel. Replay stops at the first incomplete or unreadable record,
+	 * such as one cut short by a crash, keeping everything before it.
+	 * @param file the journal
+	 * @param paintModel the model to load the drawing into
+	 * @return whether the whole journal could be replayed
+	 * @throws IOException if file can not be read
+	 */
+	static boolean replay(File file, PaintModel paintModel) throws IOException {
+		Node commands = new Node(null); // before the bottom command and after the top one
+		HashMap<Integer, Node> nodes = new HashMap<Integer, Node>(); // of each id
+		boolean complete = false;
+		try (InputStream in = new FileInputStream(file)) {
+			BinaryPaintFileParser reader = new BinaryPaintFileParser();
+			reader.open(in);
+			boolean valid = true;
+			for (byte b : JOURNAL_MAGIC) {
+				valid = valid && reader.read() == (b & 0xFF);
+			}
+			valid = valid && reader.read() == BinaryPaintFormat.VERSION;
+			while (valid) {
+				reader.startRecord();
+				int type = reader.read();
+				if (type == -1) {
+					complete = true;
+					break;
+				}
+				int id = reader.readUnsigned();
+				Node node = nodes.get(id);
+				if (type == ADD || type == INSERT) {
+					Node below = type == ADD ? commands.previous : below(reader.readUnsigned(), commands, nodes);
+					PaintCommand command = reader.readCommand(reader.readByte());
+					valid = command != null && node == null && below != null;
+					if (valid) {
+						node = new Node(command);
+						node.linkAfter(below);
+						nodes.put(id, node);
+					}
+				} else if (type == UPDATE && node != null) {
+					PaintCommand command = reader.readCommand(reader.readByte());
+					valid = command != null;
+					if (valid) {
+						node.command = command;
+					}
+				} else if (type == REMOVE && node != null) {
+					node.unlink();
+					nodes.remove(id);
+				} else if (type == APPEND && node != null && node.command instanceof SquiggleCommand) {
+					SquiggleCommand squiggleCommand = (SquiggleCommand) node.command;
+					int n = reader.readUnsigned();
+					int last = squiggleCommand.getPointCount() - 1;
+					int x = last < 0 ? 0 : squiggleCommand.getX(last), y = last < 0 ? 0 : squiggleCommand.getY(last);
+					for (int i = 0; i < n; i++) {
+						x += reader.readSigned();
+						y += reader.readSigned();
+						squiggleCommand.add(x, y);
+					}
+				} else {
+					valid = false;
+				}
+			}
+		} catch (EOFException e) {
+			// the journal was cut short in the middle of a record
+		} catch (NumberFormatException e) {
+			// a garbled record
+		}
+		ArrayList<PaintCommand> drawing = new ArrayList<PaintCommand>(nodes.size());
+		for (Node node = commands.next; node != commands; node = node.next) {
+			drawing.add(node.command);
+		}
+		paintModel.load(drawing);
+		return complete;
+	}
+
+	/**
+	 * @param belowId the id of a command plus one, or 0 for the bottom of the drawing
+	 * @return the node of the command with belowId, commands for the bottom,
+	 * or null if there is no such command
+	 */
+	private static Node below(int belowId, Node commands, HashMap<Integer, Node> nodes) {
+		return belowId == 0 ? commands : nodes.get(belowId - 1);
+	}
+
+	/**
+	 * A command of a drawing being replayed, linked to the ones under and over it.
+	 */
+	private static class Node {
+		PaintCommand command;
+		Node previous = this, next = this;
+
+		Node(PaintCommand command) {
+			this.command = command;
+		}
+
+		void linkAfter(Node below) {
+			this.previous = below;
+			this.next = below.next;
+			below.next.previous = this;
+			below.next = this;
+		}
+
+		void unlink() {
+			this.previous.next = this.next;
+			this.next.previous = this.previous;
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package ca.utoronto.utm.paint;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class AutosaveJournalTest {
+
+	private static final int STEPS = 3000;
+
+	private String saveAsText(List<PaintCommand> commands) {
+		StringBuilder s = new StringBuilder();
+		for (PaintCommand command : commands) {
+			s.append(command.saveIntoFile());
+		}
+		return s.toString();
+	}
+
+	/**
+	 * Check the journal replays to what paintModel draws now.
+	 */
+	private void assertReplays(String message, AutosaveJournal journal, File file, PaintModel paintModel) throws Exception {
+		journal.flush();
+		PaintModel replayed = new PaintModel();
+		assertTrue(message + ": Whole journal replayed", AutosaveJournal.replay(file, replayed));
+		assertEquals(message + ": Replayed drawing", this.saveAsText(paintModel.getCommands()), this.saveAsText(replayed.getCommands()));
+	}
+
+	/**
+	 * Draw, delete, undo and redo at random, checking now and then that
+	 * the journal replays to the drawing.
+	 */
+	@Test
+	public void randomEditsTest() throws Exception {
+		File file = File.createTempFile("journal", ".pntj");
+		AutosaveJournal journal = new AutosaveJournal(file);
+		PaintModel paintModel = new PaintModel();
+		journal.start(paintModel);
+		Random random = new Random(14);
+		try {
+			for (int step = 0; step < STEPS; step++) {
+				ArrayList<PaintCommand> commands = paintModel.getCommands();
+				int action = random.nextInt(10);
+				if (action < 3) {
+					CircleCommand circle = new CircleCommand(new Point(random.nextInt(500), random.nextInt(500)), 1);
+					paintModel.startCommand(circle);
+					circle.setRadius(1 + random.nextInt(50));
+					paintModel.finishCommand();
+				} else if (action < 5) {
+					SquiggleCommand squiggle = new SquiggleCommand();
+					paintModel.startCommand(squiggle);
+					for (int i = random.nextInt(30); i >= 0; i--) {
+						squiggle.add(random.nextInt(500), random.nextInt(500));
+					}
+					paintModel.finishCommand();
+				} else if (action == 5 && !commands.isEmpty()) {
+					// Cut a few commands from anywhere in the drawing
+					ArrayList<PaintCommand> cut = new ArrayList<PaintCommand>();
+					for (int i = random.nextInt(3); i >= 0; i--) {
+						cut.add(commands.get(random.nextInt(commands.size())));
+					}
+					paintModel.removeCommands(cut);
+				} else if (action < 8 && paintModel.canUndo()) {
+					paintModel.undo();
+				} else if (action < 10 && paintModel.canRedo()) {
+					paintModel.redo();
+				}
+				if (step % 300 == 299) {
+					this.assertReplays("Step " + step, journal, file, paintModel);
+				}
+			}
+			this.assertReplays("End", journal, file, paintModel);
+		} finally {
+			journal.stop();
+		}
+	}
+
+	/**
+	 * Commands added together, as the CommandIngester adds them, are each journaled.
+	 */
+	@Test
+	public void addTogetherTest() throws Exception {
+		File file = File.createTempFile("journal", ".pntj");
+		AutosaveJournal journal = new AutosaveJournal(file);
+		PaintModel paintModel = new PaintModel();
+		journal.start(paintModel);
+		Random random = new Random(24);
+		try {
+			for (int chunk = 0; chunk < 10; chunk++) {
+				ArrayList<PaintCommand> commands = new ArrayList<PaintCommand>();
+				for (int i = random.nextInt(300); i > 0; i--) {
+					commands.add(new CircleCommand(new Point(random.nextInt(500), random.nextInt(500)), 1 + random.nextInt(50)));
+				}
+				paintModel.addCommandsTogether(commands);
+			}
+			this.assertReplays("Added", journal, file, paintModel);
+		} finally {
+			journal.stop();
+		}
+	}
+
+	/**
+	 * Commands added together while a squiggle is drawn go under it, so it
+	 * finishes on top, and undoing it takes out only the squiggle.
+	 */
+	@Test
+	public void addUnderActiveTest() throws Exception {
+		File file = File.createTempFile("journal", ".pntj");
+		AutosaveJournal journal = new AutosaveJournal(file);
+		PaintModel paintModel = new PaintModel();
+		journal.start(paintModel);
+		try {
+			paintModel.startCommand(new CircleCommand(new Point(5, 5), 5));
+			paintModel.finishCommand();
+			SquiggleCommand squiggle = new SquiggleCommand();
+			paintModel.startCommand(squiggle);
+			for (int chunk = 0; chunk < 3; chunk++) {
+				squiggle.add(10 * chunk, 20);
+				paintModel.addCommandsTogether(Arrays.asList(new CircleCommand(new Point(chunk, 40), 3),
+						new CircleCommand(new Point(chunk, 50), 3)));
+			}
+			paintModel.finishCommand();
+			List<PaintCommand> commands = paintModel.getCommands();
+			assertEquals(8, commands.size());
+			assertSame(squiggle, commands.get(7));
+			List<PaintCommand> drawn = paintModel.getCommandsIn(new BoundingBox(0, 0, 100, 100));
+			assertSame(squiggle, drawn.get(drawn.size() - 1));
+			assertEquals(this.saveAsText(commands), this.saveAsText(paintModel.snapshot()));
+			this.assertReplays("Added under", journal, file, paintModel);
+			paintModel.undo();
+			assertEquals(7, commands.size());
+			assertFalse(commands.contains(squiggle));
+			this.assertReplays("Undone", journal, file, paintModel);
+		} finally {
+			journal.stop();
+		}
+	}
+
+	/**
+	 * Undoing the removal of the bottom command puts it back at the bottom.
+	 */
+	@Test
+	public void undoRemoveBottomTest() throws Exception {
+		File file = File.createTempFile("journal", ".pntj");
+		AutosaveJournal journal = new AutosaveJournal(file);
+		PaintModel paintModel = new PaintModel();
+		journal.start(paintModel);
+		try {
+			for (int i = 0; i < 3; i++) {
+				paintModel.startCommand(new CircleCommand(new Point(10 * i, 10 * i), 5));
+				paintModel.finishCommand();
+			}
+			paintModel.removeCommand(paintModel.getCommands().get(0));
+			paintModel.removeCommand(paintModel.getCommands().get(1));
+			this.assertReplays("Removed", journal, file, paintModel);
+			paintModel.undo();
+			paintModel.undo();
+			this.assertReplays("Undone", journal, file, paintModel);
+		} finally {
+			journal.stop();
+		}
+	}
+}
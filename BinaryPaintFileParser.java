@@ -0,0 +1,254 @@
+package ca.utoronto.utm.paint;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Parse a file in the binary Paint save file format described in
+ * BinaryPaintFormat. Like PaintFileParser, an instance reports whether
+ * the parse succeeded, and if not, stores an error message, which gives
+ * the byte offset of the shape record where the error was found.
+ */
+public class BinaryPaintFileParser {
+	private String errorMessage = ""; // error encountered during parse
+	private long recordStart = 0; // byte offset of the record being parsed
+
+	private InputStream inputStream;
+	private byte[] buffer = new byte[1 << 16];
+	private int position = 0, limit = 0; // next byte and end of the bytes in buffer
+	private long bufferStart = 0; // byte offset of buffer[0]
+	private ProgressMonitor progressMonitor; // told how many bytes have been read, if set
+
+	/**
+	 * @param file a save file
+	 * @return whether file starts with the binary format's magic bytes
+	 * @throws IOException
+	 */
+	public static boolean isBinary(File file) throws IOException {
+		byte[] start = new byte[BinaryPaintFormat.MAGIC.length];
+		try (InputStream in = new FileInputStream(file)) {
+			int n = in.readNBytes(start, 0, start.length);
+			return n == start.length && Arrays.equals(start, BinaryPaintFormat.MAGIC);
+		}
+	}
+
+	/**
+	 * Return the appropriate error message when an error is found in the
+	 * file that is being parsed.
+	 * @return the error message resulting from an unsuccessful parse
+	 */
+	public String getErrorMessage() {
+		return this.errorMessage;
+	}
+
+	/**
+	 * Report the bytes read to progressMonitor as the parse goes, and stop
+	 * the parse with a CancellationException once it is cancelled.
+	 * @param progressMonitor the monitor, or null for none
+	 */
+	void setProgressMonitor(ProgressMonitor progressMonitor) {
+		this.progressMonitor = progressMonitor;
+	}
+
+	private void error(String mesg) {
+		this.errorMessage = "Error at byte " + this.recordStart + " " + mesg;
+	}
+
+	/**
+	 * Parse file as a binary paint save file.
+	 * @param file the file to parse
+	 * @param paintModel the paint model to add the commands to
+	 * @return whether the complete file was successfully parsed
+	 * @throws IOException
+	 */
+	public boolean parse(File file, PaintModel paintModel) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			return this.parse(in, paintModel);
+		}
+	}
+
+	/**
+	 * Parse inputStream as a binary paint save file. If the parse was
+	 * successful the commands are added to paintModel, otherwise
+	 * this.errorMessage is set.
+	 * @param inputStream the open file to parse
+	 * @param paintModel the paint model to add the commands to
+	 * @return whether the complete file was successfully parsed
+	 * @throws IOException
+	 */
+	public boolean parse(InputStream inputStream, PaintModel paintModel) throws IOException {
+		this.open(inputStream);
+
+		ArrayList<PaintCommand> paintCommands = new ArrayList<PaintCommand>();
+		try {
+			for (byte b : BinaryPaintFormat.MAGIC) {
+				if (this.readByte() != (b & 0xFF)) {
+					error("Expected Start of Binary Paint Save File");
+					return false;
+				}
+			}
+			int version = this.readByte();
+			if (version != BinaryPaintFormat.VERSION) {
+				error("Unsupported version " + version);
+				return false;
+			}
+			while (true) {
+				this.startRecord();
+				int tag = this.readByte();
+				if (tag == BinaryPaintFormat.END) {
+					break;
+				}
+				PaintCommand command = this.readCommand(tag);
+				if (command == null) {
+					return false;
+				}
+				paintCommands.add(command);
+			}
+			this.startRecord();
+			if (this.read() != -1) {
+				error("File did not end correctly");
+				return false;
+			}
+		} catch (EOFException e) {
+			error("Unexpected end of file");
+			return false;
+		} catch (NumberFormatException e) {
+			error("Expected valid number");
+			return false;
+		}
+		paintModel.load(paintCommands);
+		return true;
+	}
+
+	/**
+	 * Start reading inputStream from its beginning.
+	 */
+	void open(InputStream inputStream) {
+		this.inputStream = inputStream;
+		this.errorMessage = "";
+		this.position = this.limit = 0;
+		this.bufferStart = this.recordStart = 0;
+	}
+
+	/**
+	 * Mark the current byte as the start of a record, for error messages.
+	 */
+	void startRecord() {
+		this.recordStart = this.bufferStart + this.position;
+	}
+
+	/**
+	 * Read the rest of a shape record, after its tag.
+	 * @param tag the shape's tag, already read
+	 * @return the shape, or null, with this.errorMessage set, if the record is not valid
+	 * @throws EOFException if the file ends in the record
+	 * @throws NumberFormatException if a number is longer than an int
+	 */
+	PaintCommand readCommand(int tag) throws IOException {
+		if (tag != BinaryPaintFormat.CIRCLE && tag != BinaryPaintFormat.RECTANGLE
+				&& tag != BinaryPaintFormat.SQUIGGLE) {
+			error("Expected Start of Shape");
+			return null;
+		}
+		Color color = Color.rgb(this.readByte(), this.readByte(), this.readByte());
+		int flags = this.readByte();
+		if ((flags & ~BinaryPaintFormat.FILLED) != 0) {
+			error("Expected valid filled flag");
+			return null;
+		}
+
+		PaintCommand command;
+		if (tag == BinaryPaintFormat.CIRCLE) {
+			Point centre = new Point(this.readSigned(), this.readSigned());
+			int radius = this.readUnsigned();
+			if (radius < 0) {
+				error("Expected valid Circle Radius");
+				return null;
+			}
+			command = new CircleCommand(centre, radius);
+		} else if (tag == BinaryPaintFormat.RECTANGLE) {
+			Point p1 = new Point(this.readSigned(), this.readSigned());
+			Point p2 = new Point(p1.x + this.readSigned(), p1.y + this.readSigned());
+			command = new RectangleCommand(p1, p2);
+		} else {
+			int n = this.readUnsigned();
+			if (n < 0) {
+				error("Expected valid number of Squiggle Points");
+				return null;
+			}
+			SquiggleCommand squiggleCommand = new SquiggleCommand();
+			int x = 0, y = 0;
+			for (int i = 0; i < n; i++) {
+				x += this.readSigned();
+				y += this.readSigned();
+				squiggleCommand.add(x, y);
+			}
+			command = squiggleCommand;
+		}
+		command.setColor(color);
+		command.setFill(flags == BinaryPaintFormat.FILLED);
+		return command;
+	}
+
+	int readSigned() throws IOException {
+		return BinaryPaintFormat.unzigzag(this.readUnsigned());
+	}
+
+	/**
+	 * @return the next unsigned varint
+	 * @throws NumberFormatException if it is longer than an int
+	 */
+	int readUnsigned() throws IOException {
+		int n = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = this.readByte();
+			n |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return n;
+			}
+		}
+		throw new NumberFormatException();
+	}
+
+	/**
+	 * @return the next byte
+	 * @throws EOFException at the end of the file
+	 */
+	int readByte() throws IOException {
+		int b = this.read();
+		if (b == -1) {
+			throw new EOFException();
+		}
+		return b;
+	}
+
+	/**
+	 * @return the next byte, or -1 at the end of the file
+	 * @throws CancellationException if the parse has been cancelled
+	 */
+	int read() throws IOException {
+		if (this.position == this.limit) {
+			if (this.progressMonitor != null) {
+				if (this.progressMonitor.isCancelled()) {
+					throw new CancellationException();
+				}
+				this.progressMonitor.worked(this.limit);
+			}
+			this.bufferStart += this.limit;
+			this.position = 0;
+			this.limit = Math.max(0, this.inputStream.read(this.buffer, 0, this.buffer.length));
+			if (this.limit == 0) {
+				return -1;
+			}
+		}
+		return this.buffer[this.position++] & 0xFF;
+	}
+}
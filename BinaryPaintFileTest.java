@@ -0,0 +1,88 @@
+package ca.utoronto.utm.paint;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class BinaryPaintFileTest {
+
+	private String saveAsText(PaintModel paintModel) {
+		StringBuilder s = new StringBuilder();
+		for (PaintCommand command : paintModel.getCommands()) {
+			s.append(command.saveIntoFile());
+		}
+		return s.toString();
+	}
+
+	private byte[] saveAsBinary(PaintModel paintModel) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new BinarySaveVisitor(out, paintModel).save();
+		return out.toByteArray();
+	}
+
+	/**
+	 * Load fileName as text, save it in the binary format, load that back
+	 * and check it saves as the same text.
+	 */
+	private void doRoundTripTestCase(String fileName) throws IOException {
+		PaintModel textModel = new PaintModel();
+		try (BufferedReader lineInput = new BufferedReader(new FileReader(fileName))) {
+			assertTrue(fileName + ": Text parse", new PaintFileParser().parse(lineInput, textModel));
+		}
+		byte[] bytes = this.saveAsBinary(textModel);
+
+		BinaryPaintFileParser parser = new BinaryPaintFileParser();
+		PaintModel binaryModel = new PaintModel();
+		boolean retVal = parser.parse(new ByteArrayInputStream(bytes), binaryModel);
+		assertTrue(fileName + ": Binary parse", retVal);
+		assertEquals(fileName + ": No error message", "", parser.getErrorMessage());
+		assertEquals(fileName + ": Same commands", this.saveAsText(textModel), this.saveAsText(binaryModel));
+	}
+
+	@Test
+	public void roundTripTest1() throws IOException {
+		this.doRoundTripTestCase("samplefiles/basic_spaces.txt");
+	}
+
+	@Test
+	public void roundTripTest2() throws IOException {
+		this.doRoundTripTestCase("samplefiles/negative_points.txt");
+	}
+
+	@Test
+	public void roundTripTest3() throws IOException {
+		this.doRoundTripTestCase("samplefiles/rectangle_multi.txt");
+	}
+
+	@Test
+	public void roundTripTest4() throws IOException {
+		this.doRoundTripTestCase("samplefiles/squiggle_single.txt");
+	}
+
+	@Test
+	public void roundTripTest5() throws IOException {
+		this.doRoundTripTestCase("samplefiles/multishapes.txt");
+	}
+
+	@Test
+	public void truncatedFileTest() throws IOException {
+		PaintModel textModel = new PaintModel();
+		try (BufferedReader lineInput = new BufferedReader(new FileReader("samplefiles/multishapes.txt"))) {
+			new PaintFileParser().parse(lineInput, textModel);
+		}
+		byte[] bytes = this.saveAsBinary(textModel);
+		for (int length = 0; length < bytes.length; length++) {
+			BinaryPaintFileParser parser = new BinaryPaintFileParser();
+			byte[] truncated = Arrays.copyOf(bytes, length);
+			assertFalse("Truncated to " + length + " bytes",
+					parser.parse(new ByteArrayInputStream(truncated), new PaintModel()));
+			assertTrue(parser.getErrorMessage().startsWith("Error at byte "));
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package ca.utoronto.utm.paint;
+
+/**
+ * Constants of the binary Paint save file format, a compact alternative
+ * to the Version 1.0 text format.
+ *
+ * A file starts with the four MAGIC bytes and a VERSION byte, followed by
+ * one record per shape and an END tag. Each record starts with a tag
+ * byte, then the shape's color as three bytes r, g, b and a flags byte
+ * whose FILLED bit is set for filled shapes, then the geometry:
+ *
+ * CIRCLE     center x, center y, radius
+ * RECTANGLE  p1 x, p1 y, p2 x - p1 x, p2 y - p1 y
+ * SQUIGGLE   number of points, first x, first y, then for each later
+ *            point its x and y minus the previous point's
+ *
+ * The number of points and the radius are unsigned varints: 7 bits per
+ * byte, least significant first, with the high bit set on all but the
+ * last byte. Every other number is a zigzag encoded varint, which maps
+ * 0, -1, 1, -2, ... to 0, 1, 2, 3, ... so small negative values stay
+ * short too.
+ */
+final class BinaryPaintFormat {
+	static final byte[] MAGIC = { 'P', 'N', 'T', 'B' };
+	static final int VERSION = 1;
+
+	static final int END = 0;
+	static final int CIRCLE = 1;
+	static final int RECTANGLE = 2;
+	static final int SQUIGGLE = 3;
+
+	static final int FILLED = 1;
+
+	/**
+	 * The file name extension used for binary files, so Save knows which
+	 * format to write.
+	 */
+	static final String EXTENSION = ".pntb";
+
+	private BinaryPaintFormat() {
+	}
+
+	static int zigzag(int n) {
+		return (n << 1) ^ (n >> 31);
+	}
+
+	static int unzigzag(int n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+}
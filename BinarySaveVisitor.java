@@ -0,0 +1,168 @@
+package ca.utoronto.utm.paint;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import javafx.scene.paint.Color;
+
+/**
+ * The BinarySaveVisitor is a Visitor that writes the commands of a
+ * PaintModel in the binary format described in BinaryPaintFormat. Bytes
+ * are encoded straight into an internal buffer, which is written to the
+ * OutputStream whenever it fills up.
+ */
+public class BinarySaveVisitor implements Visitor {
+
+	private static final int PROGRESS_COMMANDS = 1024; // commands written between progress reports
+
+	private OutputStream outputStream;
+	private List<PaintCommand> commands;
+	private ProgressMonitor progressMonitor; // told how many commands have been written, if set
+	private byte[] buffer = new byte[1 << 16];
+	private int position = 0; // number of bytes in buffer
+
+	/**
+	 * @param outputStream the stream to write to. It is not closed by save.
+	 * @param paintModel the model to save
+	 */
+	public BinarySaveVisitor(OutputStream outputStream, PaintModel paintModel) {
+		this(outputStream, paintModel.getCommands());
+	}
+
+	/**
+	 * @param outputStream the stream to write to. It is not closed by save.
+	 * @param commands the commands to save, such as a PaintModel.snapshot
+	 */
+	public BinarySaveVisitor(OutputStream outputStream, List<PaintCommand> commands) {
+		this.outputStream = outputStream;
+		this.commands = commands;
+	}
+
+	/**
+	 * A BinarySaveVisitor for writing single records, by having commands
+	 * accept it, without the file's header and END tag. Call flush when done.
+	 * @param outputStream the stream the records are written to
+	 */
+	BinarySaveVisitor(OutputStream outputStream) {
+		this(outputStream, (List<PaintCommand>) null);
+	}
+
+	/**
+	 * Report each command written to progressMonitor, and stop the save
+	 * with a CancellationException once it is cancelled.
+	 * @param progressMonitor the monitor, or null for none
+	 */
+	void setProgressMonitor(ProgressMonitor progressMonitor) {
+		this.progressMonitor = progressMonitor;
+	}
+
+	/**
+	 * Write the header, every command in the model and the END tag.
+	 * @throws IOException
+	 */
+	public void save() throws IOException {
+		for (byte b : BinaryPaintFormat.MAGIC) {
+			this.writeByte(b);
+		}
+		this.writeByte(BinaryPaintFormat.VERSION);
+		for (int i = 0; i < this.commands.size(); i++) {
+			this.commands.get(i).accept(this);
+			if ((i + 1) % PROGRESS_COMMANDS == 0) {
+				this.reportProgress(PROGRESS_COMMANDS);
+			}
+		}
+		this.reportProgress(this.commands.size() % PROGRESS_COMMANDS);
+		this.writeByte(BinaryPaintFormat.END);
+		this.flush();
+	}
+
+	/**
+	 * Pass everything written so far on to the OutputStream.
+	 * @throws IOException
+	 */
+	void flush() throws IOException {
+		this.outputStream.write(this.buffer, 0, this.position);
+		this.position = 0;
+		this.outputStream.flush();
+	}
+
+	@Override
+	public void visit(CircleCommand circleCommand) throws IOException {
+		this.writeHeader(BinaryPaintFormat.CIRCLE, circleCommand);
+		this.writeSigned(circleCommand.getCentre().x);
+		this.writeSigned(circleCommand.getCentre().y);
+		this.writeUnsigned(circleCommand.getRadius());
+	}
+
+	@Override
+	public void visit(RectangleCommand rectangleCommand) throws IOException {
+		Point p1 = rectangleCommand.getP1(), p2 = rectangleCommand.getP2();
+		this.writeHeader(BinaryPaintFormat.RECTANGLE, rectangleCommand);
+		this.writeSigned(p1.x);
+		this.writeSigned(p1.y);
+		this.writeSigned(p2.x - p1.x);
+		this.writeSigned(p2.y - p1.y);
+	}
+
+	@Override
+	public void visit(SquiggleCommand squiggleCommand) throws IOException {
+		this.writeHeader(BinaryPaintFormat.SQUIGGLE, squiggleCommand);
+		int n = squiggleCommand.getPointCount();
+		this.writeUnsigned(n);
+		int x = 0, y = 0;
+		for (int i = 0; i < n; i++) {
+			this.writeSigned(squiggleCommand.getX(i) - x);
+			this.writeSigned(squiggleCommand.getY(i) - y);
+			x = squiggleCommand.getX(i);
+			y = squiggleCommand.getY(i);
+		}
+	}
+
+	/**
+	 * Tell progressMonitor, if any, that amount more commands are written.
+	 * @throws CancellationException if the save has been cancelled
+	 */
+	private void reportProgress(int amount) {
+		if (this.progressMonitor != null) {
+			if (this.progressMonitor.isCancelled()) {
+				throw new CancellationException();
+			}
+			this.progressMonitor.worked(amount);
+		}
+	}
+
+	private void writeHeader(int tag, PaintCommand command) throws IOException {
+		Color color = command.getColor();
+		this.writeByte(tag);
+		this.writeByte((int) Math.round(color.getRed() * 255));
+		this.writeByte((int) Math.round(color.getGreen() * 255));
+		this.writeByte((int) Math.round(color.getBlue() * 255));
+		this.writeByte(command.isFill() ? BinaryPaintFormat.FILLED : 0);
+	}
+
+	void writeSigned(int n) throws IOException {
+		this.writeUnsigned(BinaryPaintFormat.zigzag(n));
+	}
+
+	void writeUnsigned(int n) throws IOException {
+		if (this.position > this.buffer.length - 5) {
+			this.outputStream.write(this.buffer, 0, this.position);
+			this.position = 0;
+		}
+		while ((n & ~0x7F) != 0) {
+			this.buffer[this.position++] = (byte) ((n & 0x7F) | 0x80);
+			n >>>= 7;
+		}
+		this.buffer[this.position++] = (byte) n;
+	}
+
+	void writeByte(int b) throws IOException {
+		if (this.position == this.buffer.length) {
+			this.outputStream.write(this.buffer, 0, this.position);
+			this.position = 0;
+		}
+		this.buffer[this.position++] = (byte) b;
+	}
+}
@@ -0,0 +1,120 @@
+package ca.utoronto.utm.paint;
+
+/**
+ * An axis aligned box of document pixels, the pixels commands are drawn
+ * in, which a Viewport maps onto the canvas. A box covers the pixels with
+ * minX <= x < maxX and minY <= y < maxY, so it is empty when either
+ * range is. Boxes are immutable.
+ *
+ * Boxes worked out from commands, whose coordinates may be anything a file
+ * holds, are clamped to within LIMIT either way, so they can not wrap around
+ * and their widths and heights fit in an int.
+ */
+public class BoundingBox {
+	static final int LIMIT = 1 << 30; // furthest a clamped box reaches from the origin
+
+	final int minX, minY, maxX, maxY; // Available to our package
+
+	static final BoundingBox EMPTY = new BoundingBox(0, 0, 0, 0);
+
+	BoundingBox(int minX, int minY, int maxX, int maxY) {
+		this.minX = minX; this.minY = minY;
+		this.maxX = maxX; this.maxY = maxY;
+	}
+
+	/**
+	 * @return the box from (minX, minY) to (maxX, maxY), each clamped to within LIMIT
+	 */
+	static BoundingBox clamped(long minX, long minY, long maxX, long maxY) {
+		return new BoundingBox(clamp(minX), clamp(minY), clamp(maxX), clamp(maxY));
+	}
+
+	private static int clamp(long coordinate) {
+		return (int) Math.max(-LIMIT, Math.min(LIMIT, coordinate));
+	}
+
+	/**
+	 * @return the box covering the pixels within margin of the segment from (x1, y1) to (x2, y2), clamped
+	 */
+	static BoundingBox around(int x1, int y1, int x2, int y2, int margin) {
+		return clamped((long) Math.min(x1, x2) - margin, (long) Math.min(y1, y2) - margin,
+				(long) Math.max(x1, x2) + margin, (long) Math.max(y1, y2) + margin);
+	}
+
+	public boolean isEmpty() {
+		return this.minX >= this.maxX || this.minY >= this.maxY;
+	}
+
+	public int getWidth() {
+		return this.maxX - this.minX;
+	}
+
+	public int getHeight() {
+		return this.maxY - this.minY;
+	}
+
+	/**
+	 * @return whether this and other have a pixel in common
+	 */
+	public boolean intersects(BoundingBox other) {
+		return !this.isEmpty() && !other.isEmpty()
+				&& this.minX < other.maxX && other.minX < this.maxX
+				&& this.minY < other.maxY && other.minY < this.maxY;
+	}
+
+	/**
+	 * @return whether pixel (x, y) is in this
+	 */
+	public boolean contains(int x, int y) {
+		return this.minX <= x && x < this.maxX && this.minY <= y && y < this.maxY;
+	}
+
+	/**
+	 * @return whether every pixel of other is in this
+	 */
+	public boolean contains(BoundingBox other) {
+		return other.isEmpty() || (this.minX <= other.minX && other.maxX <= this.maxX
+				&& this.minY <= other.minY && other.maxY <= this.maxY);
+	}
+
+	/**
+	 * @return the pixels in both this and other, which may be empty
+	 */
+	public BoundingBox intersection(BoundingBox other) {
+		return new BoundingBox(Math.max(this.minX, other.minX), Math.max(this.minY, other.minY),
+				Math.min(this.maxX, other.maxX), Math.min(this.maxY, other.maxY));
+	}
+
+	/**
+	 * @return the smallest box covering both this and other
+	 */
+	public BoundingBox union(BoundingBox other) {
+		if (other.isEmpty()) {
+			return this;
+		}
+		if (this.isEmpty()) {
+			return other;
+		}
+		return new BoundingBox(Math.min(this.minX, other.minX), Math.min(this.minY, other.minY),
+				Math.max(this.maxX, other.maxX), Math.max(this.maxY, other.maxY));
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof BoundingBox)) {
+			return false;
+		}
+		BoundingBox other = (BoundingBox) o;
+		return this.minX == other.minX && this.minY == other.minY && this.maxX == other.maxX && this.maxY == other.maxY;
+	}
+
+	@Override
+	public int hashCode() {
+		return ((this.minX * 31 + this.minY) * 31 + this.maxX) * 31 + this.maxY;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + this.minX + "," + this.minY + " - " + this.maxX + "," + this.maxY + ")";
+	}
+}
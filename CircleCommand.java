@@ -17,16 +17,18 @@ public class CircleCommand extends PaintCommand {
 	public Point getCentre() { return centre; }
 	
 	public void setCentre(Point centre) { 
+		BoundingBox oldBounds = this.getBounds();
 		this.centre = centre; 
 		this.setChanged();
-		this.notifyObservers();
+		this.notifyObservers(oldBounds.union(this.getBounds()));
 	}
 	public int getRadius() { return radius; }
 	
 	public void setRadius(int radius) { 
+		BoundingBox oldBounds = this.getBounds();
 		this.radius = radius; 
 		this.setChanged();
-		this.notifyObservers();
+		this.notifyObservers(oldBounds.union(this.getBounds()));
 	}
 	
 	public void execute(GraphicsContext g){
@@ -43,17 +45,16 @@ public class CircleCommand extends PaintCommand {
 	}
 	
 	
-	/**
-	 * Saves the CircleCommand and all its attributes according to the  
-	 * paintSaveFileFormat.txt and returns this format as a String.
-	 * @return a String of the CircleCommand and all its attributes correctly formatted.
-	 */
 	@Override
-	public String saveIntoFile() {
-		String s = "";
-		s += "\tcenter:" + "(" + this.centre.x + "," + this.centre.y + ")" + "\n";
-		s += "\tradius:" + this.radius + "\n";
-		return "Circle\n" + super.saveIntoFile() + s + "End Circle\n";
+	public CircleCommand copyMovedBy(int dx, int dy) {
+		return this.copyStyleInto(new CircleCommand(new Point(this.centre.x + dx, this.centre.y + dy), this.radius));
+	}
+	
+	@Override
+	public BoundingBox getBounds() {
+		long margin = (long) this.radius + STROKE_MARGIN;
+		return BoundingBox.clamped(this.centre.x - margin, this.centre.y - margin,
+				this.centre.x + margin, this.centre.y + margin);
 	}
 	
 	@Override
@@ -11,7 +11,7 @@ class CircleManipulatorStrategy extends ShapeManipulatorStrategy {
 	@Override
 	public void mouseDragged(MouseEvent e) {
 		int x1=circleCommand.getCentre().x, y1=circleCommand.getCentre().y;
-		int x2=(int)e.getX(), y2=(int)e.getY();
+		int x2=this.getX(e), y2=this.getY(e);
 		
 		int radius = (int)Math.sqrt((x2-x1)*(x2-x1)+(y2-y1)*(y2-y1));
 		this.circleCommand.setRadius(radius);
@@ -19,8 +19,13 @@ class CircleManipulatorStrategy extends ShapeManipulatorStrategy {
 
 	@Override
 	public void mousePressed(MouseEvent e) {
-			Point centre = new Point((int)e.getX(), (int)e.getY());
+			Point centre = new Point(this.getX(e), this.getY(e));
 			this.circleCommand=new CircleCommand(centre, 0);
 			this.addCommand(circleCommand);
 	}
+
+	@Override
+	public void mouseReleased(MouseEvent e) {
+		this.finishCommand();
+	}
 }
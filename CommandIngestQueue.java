@@ -0,0 +1,132 @@
+package ca.utoronto.utm.paint;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A queue of PaintCommands that many threads may add to at once and one
+ * thread takes from, without locks. It is a linked list: a producer swaps
+ * its node in as the tail, then links the old tail to it, and the consumer
+ * follows the links from the head. Until that link is made the consumer
+ * sees the queue end at the old tail, so no one ever waits for anyone.
+ *
+ * The queue holds at most capacity commands. When it is full, offer fails
+ * and put waits for the consumer to catch up, so producers faster than the
+ * consumer are held back rather than filling the heap.
+ */
+class CommandIngestQueue {
+	static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private static final int SPINS = 100; // times put retries before it starts sleeping
+	private static final long PARK_NANOS = 50000; // put sleeps between retries
+
+	private static class Node {
+		PaintCommand command;
+		volatile Node next;
+
+		Node(PaintCommand command) {
+			this.command = command;
+		}
+	}
+
+	private int capacity;
+	private AtomicInteger size = new AtomicInteger(); // commands offered and not yet taken
+	private AtomicReference<Node> tail; // the last node, swapped by producers
+	private Node head; // the consumer's: the last node taken, whose next is the first waiting
+
+	CommandIngestQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	CommandIngestQueue(int capacity) {
+		this.capacity = capacity;
+		this.head = new Node(null);
+		this.tail = new AtomicReference<Node>(this.head);
+	}
+
+	int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @return the number of commands offered and not yet taken
+	 */
+	int size() {
+		return this.size.get();
+	}
+
+	boolean isEmpty() {
+		return this.size.get() == 0;
+	}
+
+	/**
+	 * Add command at the end of the queue, from any thread, if there is room.
+	 * @return whether it was added
+	 */
+	boolean offer(PaintCommand command) {
+		if (this.size.getAndIncrement() >= this.capacity) {
+			this.size.getAndDecrement();
+			return false;
+		}
+		Node node = new Node(command);
+		this.tail.getAndSet(node).next = node;
+		return true;
+	}
+
+	/**
+	 * Add command at the end of the queue, from any thread, waiting for room.
+	 */
+	void put(PaintCommand command) throws InterruptedException {
+		for (int tries = 0; !this.offer(command); tries++) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (tries < SPINS) {
+				Thread.onSpinWait();
+			} else {
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Take the first command, from the consumer thread only.
+	 * @return the command, or null if none is ready
+	 */
+	PaintCommand poll() {
+		Node next = this.head.next;
+		if (next == null) {
+			return null;
+		}
+		PaintCommand command = next.command;
+		next.command = null; // the node stays as the head, so do not keep the command alive
+		this.head = next;
+		this.size.getAndDecrement();
+		return command;
+	}
+
+	/**
+	 * Take up to max commands, in order, passing each to sink, from the
+	 * consumer thread only. Room is made for producers once, for them all.
+	 * @return the number of commands taken
+	 */
+	int drain(Consumer<? super PaintCommand> sink, int max) {
+		int taken = 0;
+		Node head = this.head;
+		try {
+			for (Node next; taken < max && (next = head.next) != null; ) {
+				PaintCommand command = next.command;
+				next.command = null;
+				head = next;
+				taken++;
+				sink.accept(command);
+			}
+		} finally {
+			this.head = head;
+			this.size.getAndAdd(-taken);
+		}
+		return taken;
+	}
+}
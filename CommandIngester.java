@@ -0,0 +1,99 @@
+package ca.utoronto.utm.paint;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/**
+ * Lets any thread add commands to a PaintModel, which only the JavaFX
+ * thread may change, such as a script generating shapes, a replay of a
+ * recorded session or a connection to another Paint. Producers put
+ * commands in a CommandIngestQueue, and on each JavaFX pulse the queue is
+ * drained onto the model, for at most FRAME_BUDGET, so however fast the
+ * producers are the user interface keeps responding. If the model cannot
+ * keep up the queue fills and producers wait.
+ *
+ * Each chunk of commands is added with PaintModel.addCommandsTogether, so
+ * observers are notified once per chunk, with one region covering it,
+ * rather than once per command. They are not edits that can be undone,
+ * like the commands of a loaded file. A chunk arriving while the user draws
+ * goes under the command being drawn, which finishes on top.
+ *
+ * The timer only runs while there are commands to drain: the producer that
+ * finds it stopped starts it.
+ */
+class CommandIngester extends AnimationTimer {
+	static final long FRAME_BUDGET = 8000000L; // nanoseconds of a pulse spent adding commands
+	private static final int CHUNK = 256; // commands added between looks at the clock
+
+	private CommandIngestQueue queue;
+	private PaintModel model;
+	private AtomicBoolean running = new AtomicBoolean(); // whether the timer is running, or about to
+	private ArrayList<PaintCommand> chunk = new ArrayList<PaintCommand>(CHUNK); // the commands being drained
+
+	CommandIngester(PaintModel model) {
+		this(model, new CommandIngestQueue());
+	}
+
+	CommandIngester(PaintModel model, CommandIngestQueue queue) {
+		this.model = model;
+		this.queue = queue;
+	}
+
+	/**
+	 * Add the commands still to come to model, from the JavaFX thread.
+	 */
+	void setPaintModel(PaintModel model) {
+		this.model = model;
+	}
+
+	CommandIngestQueue getQueue() {
+		return this.queue;
+	}
+
+	/**
+	 * Add command to the model soon, from any thread, if the queue has room.
+	 * @return whether it will be added
+	 */
+	boolean offer(PaintCommand command) {
+		if (!this.queue.offer(command)) {
+			return false;
+		}
+		this.wake();
+		return true;
+	}
+
+	/**
+	 * Add command to the model soon, from any thread, waiting while the queue is full.
+	 */
+	void put(PaintCommand command) throws InterruptedException {
+		this.queue.put(command);
+		this.wake();
+	}
+
+	private void wake() {
+		if (!this.running.get() && this.running.compareAndSet(false, true)) {
+			Platform.runLater(this::start);
+		}
+	}
+
+	@Override
+	public void handle(long now) {
+		long start = System.nanoTime();
+		int drained;
+		do {
+			drained = this.queue.drain(this.chunk::add, CHUNK);
+			this.model.addCommandsTogether(this.chunk);
+			this.chunk.clear();
+		} while (drained == CHUNK && System.nanoTime() - start < FRAME_BUDGET);
+		if (this.queue.isEmpty()) {
+			// Stop, unless a producer added a command without seeing running false
+			this.running.set(false);
+			if (this.queue.isEmpty() || !this.running.compareAndSet(false, true)) {
+				this.stop();
+			}
+		}
+	}
+}
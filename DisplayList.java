@@ -0,0 +1,301 @@
+package ca.utoronto.utm.paint;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Paint;
+
+/**
+ * A list of commands compiled into the GraphicsContext calls that draw
+ * them, so it can be drawn again and again without visiting the commands.
+ *
+ * Compiling visits the commands in order and leaves out the setFill and
+ * setStroke calls that would set the paint already set, so a run of shapes
+ * of one color sets it once. Consecutive shapes drawn by the same call with
+ * the same paint, such as filled rectangles of one color, are merged into
+ * a batch: one entry whose shapes are drawn in a tight loop. The calls that
+ * draw are the same, in the same order, as executing each command, so the
+ * result is identical; only the redundant paint changes are gone.
+ *
+ * Squiggles are drawn from their points, filled into one Polyline the
+ * display list reuses, so a display list of them stays small, and must be
+ * recompiled if they change.
+ *
+ * A display list is compiled for a region of the document and a scale, in
+ * canvas pixels per document pixel, and leaves out the detail that scale
+ * can not show: commands whose bounds are under a canvas pixel across, and,
+ * zoomed out, all but one squiggle point per canvas pixel. It can then draw
+ * any part of its region, skipping the shapes and squiggles outside it, so
+ * it need not be recompiled for each step of a pan. A command added on top
+ * of the ones compiled can be appended, so drawing on, or a stream of
+ * commands arriving, does not recompile it either.
+ */
+class DisplayList implements Visitor {
+	private static final int SET_FILL = 0; // argument: index into references of the Paint
+	private static final int SET_STROKE = 1;
+	private static final int FILL_RECT = 2; // argument: number of shapes, each 4 operands
+	private static final int STROKE_RECT = 3;
+	private static final int FILL_OVAL = 4;
+	private static final int STROKE_OVAL = 5;
+	private static final int STROKE_POLYLINE = 6; // argument: index into references of the SquiggleCommand, then its bounds
+	private static final int STROKE_POINTS = 7; // argument: index into references of the x, then the y coordinates, then the bounds
+
+	private BoundingBox region; // the part of the document compiled, or null for all of it
+	private double scale;
+
+	private int[] ops = new int[64]; // opcode and argument of each entry
+	private int opsSize = 0;
+	private double[] operands = new double[256]; // x, y, width and height of each batched shape
+	private int operandsSize = 0;
+	private ArrayList<Object> references = new ArrayList<Object>(); // paints and squiggles
+
+	private Paint fill, stroke; // as set by the entries so far
+	private int batchOp = -1; // the opcode of the last entry, if it is a batch still open
+	private double[] pointsX, pointsY; // while compiling, the squiggle points kept at this scale
+	private SquiggleCommand.Polyline polyline = new SquiggleCommand.Polyline(); // filled for each squiggle drawn
+
+	private DisplayList(BoundingBox region, double scale) {
+		this.region = region;
+		this.scale = scale;
+	}
+
+	/**
+	 * Compile commands, in order, leaving out skip and the detail too small to
+	 * see at scale.
+	 * @param commands the commands that draw inside region, or all of them if region is null
+	 * @param skip a command not to draw, such as the active command, or null
+	 * @param scale canvas pixels per document pixel
+	 */
+	static DisplayList compile(List<PaintCommand> commands, PaintCommand skip, BoundingBox region, double scale) {
+		DisplayList displayList = new DisplayList(region, scale);
+		try {
+			for (PaintCommand c : commands) {
+				if (c != skip && !displayList.isTooSmall(c.getBounds())) {
+					c.accept(displayList);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // compiling does not throw
+		}
+		displayList.pointsX = displayList.pointsY = null;
+		return displayList;
+	}
+
+	/**
+	 * Add command on top of the commands compiled, as compiling it after them
+	 * would, unless it is outside the region or too small to see.
+	 */
+	void append(PaintCommand command) {
+		BoundingBox bounds = command.getBounds();
+		if ((this.region == null || this.region.intersects(bounds)) && !this.isTooSmall(bounds)) {
+			try {
+				command.accept(this);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e); // compiling does not throw
+			}
+			this.pointsX = this.pointsY = null;
+		}
+	}
+
+	/**
+	 * @return whether this can draw region, or all the commands if it is null, at scale
+	 */
+	boolean covers(BoundingBox region, double scale) {
+		return scale == this.scale && (this.region == null || (region != null && this.region.contains(region)));
+	}
+
+	/**
+	 * @return whether bounds are under a canvas pixel across at this scale
+	 */
+	private boolean isTooSmall(BoundingBox bounds) {
+		return Math.max(bounds.getWidth(), bounds.getHeight()) * this.scale < 1;
+	}
+
+	/**
+	 * Draw the commands that draw inside region on g, or all of them if
+	 * region is null. The paint is set as for all of them.
+	 * @return the number of commands drawn
+	 */
+	int execute(GraphicsContext g, BoundingBox region) {
+		int drawn = 0;
+		double[] operands = this.operands;
+		int operand = 0;
+		for (int i = 0; i < this.opsSize; i += 2) {
+			int op = this.ops[i], argument = this.ops[i + 1];
+			switch (op) {
+			case SET_FILL:
+				g.setFill((Paint) this.references.get(argument));
+				break;
+			case SET_STROKE:
+				g.setStroke((Paint) this.references.get(argument));
+				break;
+			case STROKE_POLYLINE:
+				if (region == null || region.intersects((BoundingBox) this.references.get(argument + 1))) {
+					((SquiggleCommand) this.references.get(argument)).strokePolyline(g, this.polyline);
+					drawn++;
+				}
+				break;
+			case STROKE_POINTS:
+				if (region == null || region.intersects((BoundingBox) this.references.get(argument + 2))) {
+					double[] pointsX = (double[]) this.references.get(argument);
+					g.strokePolyline(pointsX, (double[]) this.references.get(argument + 1), pointsX.length);
+					drawn++;
+				}
+				break;
+			default:
+				for (int end = operand + 4 * argument; operand < end; operand += 4) {
+					double x = operands[operand], y = operands[operand + 1];
+					double w = operands[operand + 2], h = operands[operand + 3];
+					if (region != null && !meets(region, x, y, w, h)) {
+						continue;
+					}
+					drawn++;
+					if (op == FILL_RECT) {
+						g.fillRect(x, y, w, h);
+					} else if (op == STROKE_RECT) {
+						g.strokeRect(x, y, w, h);
+					} else if (op == FILL_OVAL) {
+						g.fillOval(x, y, w, h);
+					} else {
+						g.strokeOval(x, y, w, h);
+					}
+				}
+			}
+		}
+		return drawn;
+	}
+
+	/**
+	 * @return whether the shape at (x, y), w by h, with its stroke, draws inside region
+	 */
+	private static boolean meets(BoundingBox region, double x, double y, double w, double h) {
+		int margin = PaintCommand.STROKE_MARGIN; // as in the bounds of the shape's command
+		return x - margin < region.maxX && region.minX < x + w + margin
+				&& y - margin < region.maxY && region.minY < y + h + margin;
+	}
+
+	@Override
+	public void visit(SquiggleCommand squiggleCommand) {
+		// execute sets the stroke even when there is no line, but it need not
+		if (squiggleCommand.getPointCount() >= 2) {
+			this.setStroke(squiggleCommand.getColor());
+			if (this.scale < 1) {
+				this.add(STROKE_POINTS, this.decimate(squiggleCommand));
+			} else {
+				this.add(STROKE_POLYLINE, this.reference(squiggleCommand));
+			}
+			this.reference(squiggleCommand.getBounds());
+			this.batchOp = -1;
+		}
+	}
+
+	/**
+	 * Keep the points of squiggleCommand at least a canvas pixel from the
+	 * last point kept in either direction, and the last point.
+	 * @return the index into references of their x coordinates, followed by their y coordinates
+	 */
+	private int decimate(SquiggleCommand squiggleCommand) {
+		double spacing = 1 / this.scale; // a canvas pixel, in document pixels
+		int n = squiggleCommand.getPointCount();
+		int kept = 0;
+		if (this.pointsX == null) {
+			this.pointsX = new double[64];
+			this.pointsY = new double[64];
+		}
+		for (int i = 0; i < n; i++) {
+			int x = squiggleCommand.getX(i), y = squiggleCommand.getY(i);
+			if (i == 0 || i == n - 1 || Math.abs(x - this.pointsX[kept - 1]) >= spacing
+					|| Math.abs(y - this.pointsY[kept - 1]) >= spacing) {
+				if (kept == this.pointsX.length) {
+					this.pointsX = Arrays.copyOf(this.pointsX, 2 * kept);
+					this.pointsY = Arrays.copyOf(this.pointsY, 2 * kept);
+				}
+				this.pointsX[kept] = x;
+				this.pointsY[kept] = y;
+				kept++;
+			}
+		}
+		int index = this.reference(Arrays.copyOf(this.pointsX, kept));
+		this.reference(Arrays.copyOf(this.pointsY, kept));
+		return index;
+	}
+
+	@Override
+	public void visit(CircleCommand circleCommand) {
+		int x = circleCommand.getCentre().x, y = circleCommand.getCentre().y;
+		int radius = circleCommand.getRadius();
+		this.shape(circleCommand, circleCommand.isFill() ? FILL_OVAL : STROKE_OVAL,
+				x - radius, y - radius, 2 * radius, 2 * radius);
+	}
+
+	@Override
+	public void visit(RectangleCommand rectangleCommand) {
+		Point topLeft = rectangleCommand.getTopLeft();
+		Point dimensions = rectangleCommand.getDimensions();
+		this.shape(rectangleCommand, rectangleCommand.isFill() ? FILL_RECT : STROKE_RECT,
+				topLeft.x, topLeft.y, dimensions.x, dimensions.y);
+	}
+
+	/**
+	 * Add a shape drawn by op with the paint of command, to the open batch if it can.
+	 */
+	private void shape(PaintCommand command, int op, double x, double y, double w, double h) {
+		boolean fills = op == FILL_RECT || op == FILL_OVAL;
+		boolean changed = fills ? this.setFill(command.getColor()) : this.setStroke(command.getColor());
+		if (changed || this.batchOp != op) {
+			this.add(op, 0);
+			this.batchOp = op;
+		}
+		this.ops[this.opsSize - 1]++;
+		if (this.operandsSize + 4 > this.operands.length) {
+			this.operands = Arrays.copyOf(this.operands, 2 * this.operands.length);
+		}
+		this.operands[this.operandsSize++] = x;
+		this.operands[this.operandsSize++] = y;
+		this.operands[this.operandsSize++] = w;
+		this.operands[this.operandsSize++] = h;
+	}
+
+	/**
+	 * @return whether a SET_FILL was needed
+	 */
+	private boolean setFill(Paint paint) {
+		if (paint.equals(this.fill)) {
+			return false;
+		}
+		this.fill = paint;
+		this.add(SET_FILL, this.reference(paint));
+		this.batchOp = -1;
+		return true;
+	}
+
+	/**
+	 * @return whether a SET_STROKE was needed
+	 */
+	private boolean setStroke(Paint paint) {
+		if (paint.equals(this.stroke)) {
+			return false;
+		}
+		this.stroke = paint;
+		this.add(SET_STROKE, this.reference(paint));
+		this.batchOp = -1;
+		return true;
+	}
+
+	private void add(int op, int argument) {
+		if (this.opsSize + 2 > this.ops.length) {
+			this.ops = Arrays.copyOf(this.ops, 2 * this.ops.length);
+		}
+		this.ops[this.opsSize++] = op;
+		this.ops[this.opsSize++] = argument;
+	}
+
+	private int reference(Object o) {
+		this.references.add(o);
+		return this.references.size() - 1;
+	}
+}
@@ -0,0 +1,53 @@
+package ca.utoronto.utm.paint;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import javafx.concurrent.Task;
+
+/**
+ * Exports a list of commands, usually a PaintModel.snapshot, as a PNG on a
+ * background thread. The image covers everything the commands draw, at
+ * EXPORT_SCALE pixels per document pixel, or less if that would make it
+ * more than MAX_SIZE pixels across, and is drawn by a TileRenderer on all
+ * the cores. Cancelling stops the tiles not yet drawn and writes nothing.
+ */
+class ExportTask extends Task<Void> {
+	static final double EXPORT_SCALE = 4; // image pixels per document pixel
+	static final int MAX_SIZE = 8192; // image pixels along the longer side, at most
+
+	private File file;
+	private List<PaintCommand> commands;
+
+	ExportTask(File file, List<PaintCommand> commands) {
+		this.file = file;
+		this.commands = commands;
+		this.updateMessage("Exporting " + file.getName());
+	}
+
+	@Override
+	protected Void call() throws IOException {
+		BoundingBox region = BoundingBox.EMPTY;
+		for (PaintCommand c : this.commands) {
+			region = region.union(c.getBounds());
+		}
+		if (region.isEmpty()) {
+			region = ImageRenderer.CANVAS;
+		}
+		double scale = Math.min(EXPORT_SCALE, (double) MAX_SIZE / Math.max(region.getWidth(), region.getHeight()));
+		int width = Math.max(1, (int) Math.round(region.getWidth() * scale));
+		int height = Math.max(1, (int) Math.round(region.getHeight() * scale));
+		BufferedImage image = new TileRenderer().render(this.commands, region, width, height, this::isCancelled);
+		if (image == null) {
+			return null; // cancelled
+		}
+		if (!ImageIO.write(image, "png", this.file)) {
+			throw new IOException("No PNG writer is available");
+		}
+		return null;
+	}
+}
@@ -0,0 +1,144 @@
+package ca.utoronto.utm.paint;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Draws commands into a BufferedImage with Java2D, so a drawing can be
+ * rendered without JavaFX running, for example on a headless server. Each
+ * command is drawn the way its execute draws it on a JavaFX canvas: the
+ * same shapes, filled or stroked, with JavaFX's default 1 pixel stroke,
+ * square caps and miter joins, anti-aliased. When g is clipped, as for a
+ * tile, the parts of squiggles that are well outside the clip are skipped.
+ */
+class ImageRenderer implements Visitor {
+	/**
+	 * The size of the canvas in PaintPanel when it opens, the part of a drawing the user first sees.
+	 */
+	static final BoundingBox CANVAS = new BoundingBox(0, 0, 500, 500);
+
+	private static final BasicStroke STROKE = new BasicStroke(1, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 10);
+
+	private Graphics2D g;
+	private Rectangle clip; // the clip in canvas coordinates, grown by the join margin, or null
+	private Path2D.Float path = new Path2D.Float(); // reused for each squiggle
+	private Ellipse2D.Float ellipse = new Ellipse2D.Float();
+	private Rectangle2D.Float rectangle = new Rectangle2D.Float();
+
+	/**
+	 * Draw with g, in canvas coordinates under whatever transform and clip g has.
+	 */
+	ImageRenderer(Graphics2D g) {
+		this.g = g;
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+		g.setStroke(STROKE);
+		this.clip = g.getClipBounds();
+		if (this.clip != null) {
+			this.clip.grow(SquiggleCommand.JOIN_MARGIN, SquiggleCommand.JOIN_MARGIN);
+		}
+	}
+
+	/**
+	 * Render region of the drawing made by commands, scaled to fill a new
+	 * width by height image on a white background.
+	 * @return the image
+	 */
+	static BufferedImage render(List<PaintCommand> commands, BoundingBox region, int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		try {
+			g.setColor(java.awt.Color.WHITE);
+			g.fillRect(0, 0, width, height);
+			g.scale((double) width / region.getWidth(), (double) height / region.getHeight());
+			g.translate(-region.minX, -region.minY);
+			new ImageRenderer(g).render(commands);
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * Draw commands, in order.
+	 */
+	void render(List<PaintCommand> commands) {
+		try {
+			for (PaintCommand c : commands) {
+				c.accept(this);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // drawing does not throw
+		}
+	}
+
+	@Override
+	public void visit(SquiggleCommand squiggleCommand) {
+		int n = squiggleCommand.getPointCount();
+		if (n < 2) {
+			return;
+		}
+		Path2D.Float path = this.path;
+		path.reset();
+		int x = squiggleCommand.getX(0), y = squiggleCommand.getY(0);
+		boolean drawing = false; // whether the path ends at (x, y)
+		for (int i = 1; i < n; i++) {
+			int nextX = squiggleCommand.getX(i), nextY = squiggleCommand.getY(i);
+			if (this.clip == null || this.clip.intersectsLine(x, y, nextX, nextY)) {
+				if (!drawing) {
+					path.moveTo(x, y);
+					drawing = true;
+				}
+				path.lineTo(nextX, nextY);
+			} else {
+				// Break the path here; its join and cap are more than JOIN_MARGIN outside the clip
+				drawing = false;
+			}
+			x = nextX;
+			y = nextY;
+		}
+		this.g.setColor(toAwt(squiggleCommand.getColor()));
+		this.g.draw(path);
+	}
+
+	@Override
+	public void visit(CircleCommand circleCommand) {
+		Point centre = circleCommand.getCentre();
+		int radius = circleCommand.getRadius();
+		this.ellipse.setFrame(centre.x - radius, centre.y - radius, 2 * radius, 2 * radius);
+		this.fillOrStroke(circleCommand, this.ellipse);
+	}
+
+	@Override
+	public void visit(RectangleCommand rectangleCommand) {
+		Point topLeft = rectangleCommand.getTopLeft();
+		Point dimensions = rectangleCommand.getDimensions();
+		this.rectangle.setRect(topLeft.x, topLeft.y, dimensions.x, dimensions.y);
+		this.fillOrStroke(rectangleCommand, this.rectangle);
+	}
+
+	private void fillOrStroke(PaintCommand command, java.awt.Shape shape) {
+		this.g.setColor(toAwt(command.getColor()));
+		if (command.isFill()) {
+			this.g.fill(shape);
+		} else {
+			this.g.draw(shape);
+		}
+	}
+
+	private static java.awt.Color toAwt(Color color) {
+		return new java.awt.Color((float) color.getRed(), (float) color.getGreen(), (float) color.getBlue(),
+				(float) color.getOpacity());
+	}
+}
@@ -0,0 +1,61 @@
+package ca.utoronto.utm.paint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javafx.concurrent.Task;
+
+/**
+ * Parses a save file, text or binary, into a new PaintModel on a background
+ * thread, so the JavaFX thread is never blocked by a large file. Progress is
+ * the number of bytes parsed out of the size of the file. The model is built
+ * before anything observes it, and is handed to the JavaFX thread as the
+ * value of the Task.
+ */
+class LoadTask extends Task<PaintModel> implements ProgressMonitor {
+	private File file;
+	private long size; // bytes in file
+	private AtomicLong parsed = new AtomicLong(); // bytes parsed so far
+	private volatile String errorMessage = "";
+
+	LoadTask(File file) {
+		this.file = file;
+		this.updateMessage("Opening " + file.getName());
+	}
+
+	/**
+	 * @return the parser's error message if the file was not in the correct format, otherwise ""
+	 */
+	String getErrorMessage() {
+		return this.errorMessage;
+	}
+
+	@Override
+	protected PaintModel call() throws IOException {
+		long start = System.nanoTime();
+		this.size = this.file.length();
+		PaintModel paintModel = new PaintModel();
+		if (BinaryPaintFileParser.isBinary(this.file)) {
+			BinaryPaintFileParser parser = new BinaryPaintFileParser();
+			parser.setProgressMonitor(this);
+			if (!parser.parse(this.file, paintModel)) {
+				this.errorMessage = parser.getErrorMessage();
+			}
+		} else {
+			PaintFileParser parser = new PaintFileParser();
+			parser.setProgressMonitor(this);
+			if (!parser.parseParallel(this.file, paintModel)) {
+				this.errorMessage = parser.getErrorMessage();
+			}
+		}
+		PaintMetrics.get().parsed(this.size, paintModel.getCommands().size(), System.nanoTime() - start);
+		return paintModel;
+	}
+
+	@Override
+	public void worked(long amount) {
+		// A file parsed twice, when parseParallel falls back, counts in full only once
+		this.updateProgress(Math.min(this.parsed.addAndGet(amount), this.size), this.size);
+	}
+}
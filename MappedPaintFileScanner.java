@@ -0,0 +1,53 @@
+package ca.utoronto.utm.paint;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A PaintFileScanner over a region of a file mapped into memory with
+ * FileChannel.map. The save file format is plain ASCII, so each byte is
+ * taken as one character and nothing is decoded or copied onto the heap.
+ * The region is mapped one window at a time, so files larger than a
+ * single MappedByteBuffer can hold are still scanned in one pass.
+ */
+class MappedPaintFileScanner extends PaintFileScanner {
+	private static final long WINDOW_SIZE = 1L << 30;
+
+	private FileChannel channel;
+	private long windowStart; // file offset of the start of window
+	private long end; // file offset just past the region to scan
+	private MappedByteBuffer window;
+
+	/**
+	 * @param channel the open file to scan
+	 * @param start the file offset to start scanning at
+	 * @param end the file offset just past the last byte to scan
+	 */
+	MappedPaintFileScanner(FileChannel channel, long start, long end) {
+		this.channel = channel;
+		this.windowStart = start;
+		this.end = end;
+	}
+
+	@Override
+	protected int read() throws IOException {
+		if (this.window == null || !this.window.hasRemaining()) {
+			if (this.window != null) {
+				this.windowStart += this.window.capacity();
+				this.window = null;
+			}
+			long size = Math.min(WINDOW_SIZE, this.end - this.windowStart);
+			if (size <= 0) {
+				return -1;
+			}
+			this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, this.windowStart, size);
+		}
+		return this.window.get() & 0xFF;
+	}
+
+	@Override
+	protected long getPosition() {
+		return this.window == null ? this.windowStart : this.windowStart + this.window.position();
+	}
+}
@@ -1,6 +1,11 @@
 package ca.utoronto.utm.paint;
 
+import java.io.File;
+
 import javafx.application.Application;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.ButtonType;
 import javafx.stage.Stage;
 
 public class Paint extends Application {
@@ -16,8 +21,25 @@ public class Paint extends Application {
 	public void start(Stage stage) throws Exception {
 		
 		this.model = new PaintModel();
+		PaintMetrics.register();
+		
+		// If Paint did not close normally last time, offer the autosaved drawing
+		File journal = AutosaveJournal.getDefaultFile();
+		if (AutosaveJournal.hasRecoverableDrawing(journal)) {
+			Alert alert = new Alert(AlertType.CONFIRMATION,
+					"Paint did not close normally. Recover the autosaved drawing?", ButtonType.YES, ButtonType.NO);
+			alert.setHeaderText("Recover drawing");
+			if (alert.showAndWait().orElse(ButtonType.NO) == ButtonType.YES) {
+				AutosaveJournal.replay(journal, this.model);
+			}
+		}
 		
 		// View + Controller
 		this.view = new View(model, stage);
 	}
+
+	@Override
+	public void stop() {
+		this.view.stopAutosave();
+	}
 }
@@ -0,0 +1,48 @@
+package ca.utoronto.utm.paint;
+
+import java.util.List;
+
+/**
+ * Describes a change to a PaintModel. The model passes one of these to
+ * its observers with each notification, giving the command that changed
+ * and the canvas region whose pixels may be different, covering both the
+ * old and the new state of the command, and whether the command was
+ * taken out of the model, and if it was put in or taken out, where. A
+ * PaintChange without a command means only the
+ * selection changed, within region. A notification without a PaintChange
+ * means the whole model may have changed.
+ *
+ * Several commands added together are one PaintChange, listing them in
+ * commands, with the last as command and region covering them all. They go
+ * on top of the model, or just under the command the user is drawing.
+ */
+public class PaintChange {
+	final PaintCommand command; // Available to our package
+	final BoundingBox region;
+	final boolean removed;
+	final int index; // where command was put into or taken out of the model, or -1 if it only changed
+	final List<PaintCommand> commands; // the commands added together, from index on, or null if only command
+
+	PaintChange(PaintCommand command, BoundingBox region) {
+		this(command, region, false, -1);
+	}
+
+	PaintChange(PaintCommand command, BoundingBox region, boolean removed, int index) {
+		this.command = command;
+		this.region = region;
+		this.removed = removed;
+		this.index = index;
+		this.commands = null;
+	}
+
+	/**
+	 * The commands were added together, from index on.
+	 */
+	PaintChange(List<PaintCommand> commands, BoundingBox region, int index) {
+		this.command = commands.get(commands.size() - 1);
+		this.region = region;
+		this.removed = false;
+		this.index = index;
+		this.commands = commands;
+	}
+}
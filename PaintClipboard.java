@@ -0,0 +1,140 @@
+package ca.utoronto.utm.paint;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.DataFormat;
+
+/**
+ * Holds the commands last cut or copied, for Paste. The clipboard keeps
+ * copies, so later edits to the drawing do not change what is pasted, and
+ * each paste is a new copy, moved PASTE_OFFSET further than the one before
+ * so they do not hide each other. A copy of a squiggle shares its points,
+ * so copying and pasting take the same time however long the squiggles are.
+ *
+ * Each copy puts a small marker on the system clipboard, under COPY_FORMAT,
+ * and a paste that finds its own marker still there pastes the commands it
+ * kept, without reading the clipboard's text. Copies of up to
+ * MAX_TEXT_POINTS points are also put there in the text save format, so
+ * they can be pasted into another Paint; larger ones would take too long
+ * to write out on every Copy. Pasting text someone else put there parses
+ * it instead.
+ */
+class PaintClipboard {
+	static final int PASTE_OFFSET = 10;
+	static final int MAX_TEXT_POINTS = 20000; // points a copy may have and still be put on the clipboard as text
+	static final DataFormat COPY_FORMAT = dataFormat("application/x-paint-copy");
+
+	private Clipboard systemClipboard; // may be null
+	private ArrayList<PaintCommand> commands = new ArrayList<PaintCommand>();
+	private String id = UUID.randomUUID().toString(); // tells this clipboard's markers from another Paint's
+	private int copies = 0; // number of copies made, to tell them apart
+	private String marker; // put on the system clipboard with the last copy
+	private String text; // the text last parsed from the system clipboard
+	private int pastes = 0; // number of times commands has been pasted
+
+	/**
+	 * @param systemClipboard the clipboard to share commands through, or null for none
+	 */
+	PaintClipboard(Clipboard systemClipboard) {
+		this.systemClipboard = systemClipboard;
+	}
+
+	/**
+	 * Replace the clipboard with copies of commands.
+	 */
+	void copy(List<PaintCommand> commands) {
+		this.commands = new ArrayList<PaintCommand>(commands.size());
+		for (PaintCommand c : commands) {
+			this.commands.add(c.copy());
+		}
+		this.pastes = 0;
+		if (this.systemClipboard != null) {
+			this.marker = this.id + "/" + this.copies++;
+			this.text = null;
+			ClipboardContent content = new ClipboardContent();
+			content.put(COPY_FORMAT, this.marker);
+			if (countPoints(this.commands) <= MAX_TEXT_POINTS) {
+				StringWriter s = new StringWriter();
+				try {
+					new SaveVisitor(s, this.commands).save();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e); // a StringWriter does not throw
+				}
+				content.putString(s.toString());
+			}
+			this.systemClipboard.setContent(content);
+		}
+	}
+
+	/**
+	 * @return the number of points commands are saved with: a squiggle's, or one for another shape
+	 */
+	private static long countPoints(List<PaintCommand> commands) {
+		long points = 0;
+		for (PaintCommand c : commands) {
+			points += c instanceof SquiggleCommand ? ((SquiggleCommand) c).getPointCount() : 1;
+		}
+		return points;
+	}
+
+	/**
+	 * @return the DataFormat for mimeType, which may only be created once
+	 */
+	private static DataFormat dataFormat(String mimeType) {
+		DataFormat format = DataFormat.lookupMimeType(mimeType);
+		return format != null ? format : new DataFormat(mimeType);
+	}
+
+	/**
+	 * @return new copies of the clipboard's commands, to add to the drawing,
+	 *         or an empty list if there is nothing to paste
+	 */
+	List<PaintCommand> paste() {
+		if (this.systemClipboard != null && this.systemClipboard.hasString()
+				&& (this.marker == null || !this.marker.equals(this.systemClipboard.getContent(COPY_FORMAT)))) {
+			// Someone else has put text there since our last copy
+			String text = this.systemClipboard.getString();
+			if (!text.equals(this.text)) {
+				this.parse(text);
+			}
+		}
+		this.pastes++;
+		int offset = this.pastes * PASTE_OFFSET;
+		ArrayList<PaintCommand> pasted = new ArrayList<PaintCommand>(this.commands.size());
+		for (PaintCommand c : this.commands) {
+			pasted.add(c.copyMovedBy(offset, offset));
+		}
+		return pasted;
+	}
+
+	/**
+	 * Take the commands from text another program put on the system
+	 * clipboard, if it is a Paint save file, and otherwise empty the clipboard.
+	 */
+	private void parse(String text) {
+		PaintModel paintModel = new PaintModel();
+		PaintFileParser parser = new PaintFileParser();
+		this.commands = new ArrayList<PaintCommand>();
+		try {
+			if (parser.parse(new BufferedReader(new StringReader(text)), paintModel)) {
+				for (PaintCommand c : paintModel.getCommands()) {
+					this.commands.add(c.copy()); // without paintModel observing it
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace(); // a StringReader does not throw
+		}
+		this.text = text;
+		this.marker = null;
+		this.pastes = -1; // so the first paste is where the other program had it
+	}
+}
@@ -1,21 +1,33 @@
 package ca.utoronto.utm.paint;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.Observable;
+import java.util.concurrent.ThreadLocalRandom;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 
 public abstract class PaintCommand extends Observable implements Visitable {
+	/**
+	 * Strokes are 1 pixel wide and centred on the outline, so with anti-aliasing
+	 * they touch pixels up to this far outside the outline.
+	 */
+	static final int STROKE_MARGIN = 1;
+
 	private Color color;
 	private boolean fill;
 	
 	PaintCommand(){
-		// Pick a random color for this
-		int r = (int)(Math.random()*256);
-		int g = (int)(Math.random()*256);
-		int b= (int)(Math.random()*256);
+		// Pick a random color for this. Commands are built on several
+		// threads at once by parseParallel, so use a per thread generator.
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int r = random.nextInt(256);
+		int g = random.nextInt(256);
+		int b= random.nextInt(256);
 		this.color = Color.rgb(r, g, b);
 		
-		this.fill = (1==(int)(Math.random()*2));
+		this.fill = random.nextBoolean();
 	}
 	public Color getColor() {
 		return color;
@@ -36,13 +48,15 @@ public abstract class PaintCommand extends Observable implements Visitable {
 	 * @return s which is String containing all the needed attributes of a PaintCommand 
 	 */
 	public String saveIntoFile() {
-		int r = (int)(this.color.getRed() * 255);
-		int g = (int)(this.color.getGreen() * 255);
-		int b = (int)(this.color.getBlue() * 255);
-		String s = "";
-		s+="\tcolor:"+r+","+g+","+b+"\n";
-		s+="\tfilled:"+this.fill+"\n";
-		return s;
+		StringWriter s = new StringWriter();
+		SaveVisitor saveVisitor = new SaveVisitor(s);
+		try {
+			this.accept(saveVisitor);
+			saveVisitor.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // a StringWriter does not throw
+		}
+		return s.toString();
 	}
 	
 	public String toString(){
@@ -57,4 +71,36 @@ public abstract class PaintCommand extends Observable implements Visitable {
 	}
 	
 	public abstract void execute(GraphicsContext g);
+
+	/**
+	 * @return a new command that draws the same as this, with no observers,
+	 *         that later changes to this do not affect
+	 */
+	public PaintCommand copy() {
+		return this.copyMovedBy(0, 0);
+	}
+
+	/**
+	 * @return a copy, as from copy, that draws dx pixels right and dy pixels down of this
+	 */
+	public abstract PaintCommand copyMovedBy(int dx, int dy);
+
+	/**
+	 * Give copy the color and fill of this.
+	 * @return copy
+	 */
+	<T extends PaintCommand> T copyStyleInto(T copy) {
+		copy.setColor(this.color);
+		copy.setFill(this.fill);
+		return copy;
+	}
+
+	/**
+	 * Return the box of canvas pixels this command may touch when executed.
+	 * Whenever the command changes shape, it notifies its observers with a
+	 * BoundingBox covering the pixels that may be different, which includes
+	 * the box before and after the change.
+	 * @return the box of pixels this command draws in
+	 */
+	public abstract BoundingBox getBounds();
 }
@@ -0,0 +1,109 @@
+package ca.utoronto.utm.paint;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+
+/**
+ * A piece of a save file that is parsed on its own, so that the pieces of
+ * a large file can be parsed in parallel. Apart from the first chunk, which
+ * starts at the beginning of the file, every chunk starts on the first line
+ * of a Circle, Rectangle or Squiggle block. Each chunk records the commands
+ * it parsed, the state the parse ended in, and how many lines it spans, so
+ * PaintFileParser.parseParallel can stitch the chunks back together in file
+ * order and turn line numbers within a chunk into line numbers in the file.
+ */
+class PaintFileChunk implements Callable<PaintFileChunk> {
+	private FileChannel channel;
+	long start, end; // file offsets of the first byte and just past the last byte
+
+	PaintFileParser parser = new PaintFileParser();
+	ArrayList<PaintCommand> paintCommands = new ArrayList<PaintCommand>();
+	int endState; // the parse state at the end of the chunk, or PaintFileParser.ERROR
+	int lineCount; // the number of lines in the chunk
+
+	PaintFileChunk(FileChannel channel, long start, long end) {
+		this.channel = channel;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Parse this chunk. The first chunk expects the start of the file, and
+	 * every other chunk expects the start of a shape.
+	 * @return this
+	 */
+	@Override
+	public PaintFileChunk call() {
+		MappedPaintFileScanner scanner = new MappedPaintFileScanner(this.channel, this.start, this.end);
+		this.endState = this.parser.parse(scanner, this.start == 0 ? 0 : 1, this.paintCommands);
+		this.lineCount = scanner.getLineNumber();
+		return this;
+	}
+
+	/**
+	 * Find the first line at or after from whose normalized text starts a
+	 * shape block, that is "Circle", "Rectangle" or "Squiggle".
+	 * @param channel the open file to search
+	 * @param from the file offset to start searching at, at least 1
+	 * @param end the size of the file
+	 * @return the file offset of the start of that line, or end if there is none
+	 * @throws IOException
+	 */
+	static long findBlockStart(FileChannel channel, long from, long end) throws IOException {
+		MappedPaintFileScanner scanner = new MappedPaintFileScanner(channel, from - 1, end);
+		long position = from - 1;
+		int c = scanner.read(); // always the byte at position
+
+		// Skip the rest of the line that from - 1 is on
+		while (c != -1 && c != '\n' && c != '\r') {
+			position++;
+			c = scanner.read();
+		}
+		char[] word = new char[9];
+		while (c != -1) {
+			if (c == '\r') {
+				position++;
+				c = scanner.read();
+			}
+			if (c == '\n') {
+				position++;
+				c = scanner.read();
+			}
+			long lineStart = position;
+			int length = 0;
+			while (c != -1 && c != '\n' && c != '\r') {
+				if (c != ' ' && c != '\t' && c != '\f' && c != '\u000B') {
+					if (length < word.length) {
+						word[length] = (char) c;
+					}
+					length++;
+				}
+				position++;
+				c = scanner.read();
+			}
+			if (isBlockStart(word, length)) {
+				return lineStart;
+			}
+		}
+		return end;
+	}
+
+	private static boolean isBlockStart(char[] word, int length) {
+		return matches(word, length, "Circle") || matches(word, length, "Rectangle")
+				|| matches(word, length, "Squiggle");
+	}
+
+	private static boolean matches(char[] word, int length, String keyword) {
+		if (length != keyword.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (word[i] != keyword.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
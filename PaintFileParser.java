@@ -3,66 +3,63 @@ package ca.utoronto.utm.paint;
 import javafx.scene.paint.Color;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 /**
  * Parse a file in Version 1.0 PaintSaveFile format. An instance of this class
  * understands the paint save file format, storing information about
  * its effort to parse a file. After a successful parse, an instance
  * will have an ArrayList of PaintCommand suitable for rendering.
  * If there is an error in the parse, the instance stores information
- * about the error. For more on the format of Version 1.0 of the paint 
+ * about the error. For more on the format of Version 1.0 of the paint
  * save file format, see the associated documentation.
- * 
+ *
+ * The file is read through a PaintFileScanner, which hands over one
+ * normalized line at a time and matches the keywords and integers of
+ * the format straight from its char buffer.
+ *
  * @author Wafiqah Raisa
  *
  */
 public class PaintFileParser {
 	private int lineNumber = 0; // the current line being parsed
 	private String errorMessage =""; // error encountered during parse
-	private PaintModel paintModel; 
-	
+	private String errorReason = ""; // errorMessage without the line number
+	private PaintModel paintModel;
+
+	static final int ERROR = -1; // the state machine found an error
+	private static final long MIN_CHUNK_SIZE = 1 << 20; // smallest piece parsed in parallel
+	private static final int PROGRESS_LINES = 4096; // lines parsed between progress reports
+
+	private ProgressMonitor progressMonitor; // told how many bytes have been parsed, if set
+
 	/**
-	 * Below are Patterns used in parsing 
+	 * Below are the values matched by the last color, point or radius line
 	 */
-	private Pattern pFileStart=Pattern.compile("^PaintSaveFileVersion1.0$");
-	private Pattern pFileEnd=Pattern.compile("^EndPaintSaveFile$");
-
-	private Pattern pColor = Pattern.compile("^color:(\\d{1,3}),(\\d{1,3}),(\\d{1,3})$");
-	private Pattern pFilled = Pattern.compile("^filled:(true|false)$");
-	
-	private Pattern pCircleStart=Pattern.compile("^Circle$");
+	int[] cA = new int[3];
+	private int pointX, pointY, radius;
 
-	private Pattern pCircleEnd=Pattern.compile("^EndCircle$");
-	private Pattern pCircleCenter = Pattern.compile("center:\\((\\d{1,3}),(\\d{1,3})\\)");
-	private Pattern pCircleRadius = Pattern.compile("radius:([0-9]+)");
-	
-	private Pattern pRectangleStart = Pattern.compile("^Rectangle$");
-	private Pattern pRectangleEnd = Pattern.compile("^EndRectangle$");
-	private Pattern pRectangleP1 = Pattern.compile("^p1:\\((\\d{1,3}),(\\d{1,3})\\)");
-	private Pattern pRectangleP2 = Pattern.compile("^p2:\\((-?\\d{1,3}),(-?\\d{1,3})\\)");
-	
-	private Pattern pSquiggleStart = Pattern.compile("^Squiggle$");
-	private Pattern pSquiggleEnd = Pattern.compile("^EndSquiggle$");
-	private Pattern pSquiggleStartPoints = Pattern.compile("^points$");
-	private Pattern pSquigglePoint = Pattern.compile("^point:\\((-?\\d{1,3}),(-?\\d{1,3})\\)");
-	private Pattern pSquiggleEndPoints = Pattern.compile("^endpoints$");	
-	
-	int[] cA;
-	
 	/**
-	 * Store an appropriate error message in this, including 
+	 * Store an appropriate error message in this, including
 	 * lineNumber where the error occurred.
 	 * @param mesg
 	 */
 	private void error(String mesg){
+		this.errorReason = mesg;
 		this.errorMessage = "Error in line "+lineNumber+" "+mesg;
 	}
-	
+
 	/**
 	 * Return the appropriate error message when an error is found in the
 	 * file that is being parsed.
@@ -71,106 +68,251 @@ public class PaintFileParser {
 	public String getErrorMessage(){
 		return this.errorMessage;
 	}
-	
+
+	/**
+	 * Report the bytes parsed to progressMonitor as the parse goes, and stop
+	 * the parse with a CancellationException once it is cancelled.
+	 * @param progressMonitor the monitor, or null for none
+	 */
+	void setProgressMonitor(ProgressMonitor progressMonitor) {
+		this.progressMonitor = progressMonitor;
+	}
+
 	/**
 	 * Parse the inputStream as a Paint Save File Format file.
 	 * The result of the parse is stored as an ArrayList of Paint command.
 	 * If the parse was not successful, this.errorMessage is appropriately
 	 * set, with a useful error message.
-	 * 
+	 *
 	 * @param inputStream the open file to parse
 	 * @param paintModel the paint model to add the commands to
 	 * @return whether the complete file was successfully parsed
-	 * @throws FileNotFoundException 
+	 * @throws FileNotFoundException
 	 */
 	public boolean parse(BufferedReader inputStream, PaintModel paintModel) throws FileNotFoundException {
+		return this.parse(new ReaderPaintFileScanner(inputStream), paintModel);
+	}
+
+	/**
+	 * Parse file as a Paint Save File Format file. The file is mapped into
+	 * memory and parsed straight from the mapped bytes, so large files are
+	 * loaded without first being decoded into Strings on the heap.
+	 * Success and errors are reported as in parse(BufferedReader, PaintModel).
+	 *
+	 * @param file the file to parse
+	 * @param paintModel the paint model to add the commands to
+	 * @return whether the complete file was successfully parsed
+	 * @throws IOException if file can not be opened or mapped
+	 */
+	public boolean parse(File file, PaintModel paintModel) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return this.parse(new MappedPaintFileScanner(channel, 0, channel.size()), paintModel);
+		}
+	}
+
+	/**
+	 * Parse file as a Paint Save File Format file using all available cores.
+	 * The file is split into chunks at the start of shape blocks, the chunks
+	 * are parsed on the common fork-join pool, and the resulting commands are
+	 * added to paintModel in file order. Success and errors, including the
+	 * line number of an error, are reported as in parse(File, PaintModel).
+	 *
+	 * @param file the file to parse
+	 * @param paintModel the paint model to add the commands to
+	 * @return whether the complete file was successfully parsed
+	 * @throws IOException if file can not be opened or mapped
+	 */
+	public boolean parseParallel(File file, PaintModel paintModel) throws IOException {
+		return this.parseParallel(file, paintModel, MIN_CHUNK_SIZE);
+	}
+
+	/**
+	 * As parseParallel(File, PaintModel), splitting the file into chunks
+	 * of roughly minChunkSize bytes or more.
+	 */
+	boolean parseParallel(File file, PaintModel paintModel, long minChunkSize) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			ForkJoinPool pool = ForkJoinPool.commonPool();
+			long pieces = Math.min(pool.getParallelism() * 4L, size / minChunkSize);
+			if (pieces <= 1) {
+				return this.parse(new MappedPaintFileScanner(channel, 0, size), paintModel);
+			}
+
+			// Find the shape block nearest each evenly spaced split point
+			ArrayList<Callable<Long>> searches = new ArrayList<Callable<Long>>();
+			for (long i = 1; i < pieces; i++) {
+				long from = size * i / pieces;
+				searches.add(() -> PaintFileChunk.findBlockStart(channel, from, size));
+			}
+			ArrayList<PaintFileChunk> chunks = new ArrayList<PaintFileChunk>();
+			long start = 0;
+			for (long boundary : PaintFileParser.getAll(pool.invokeAll(searches))) {
+				if (boundary > start && boundary < size) {
+					chunks.add(new PaintFileChunk(channel, start, boundary));
+					start = boundary;
+				}
+			}
+			chunks.add(new PaintFileChunk(channel, start, size));
+			for (PaintFileChunk chunk : chunks) {
+				chunk.parser.setProgressMonitor(this.progressMonitor);
+			}
+			PaintFileParser.getAll(pool.invokeAll(chunks));
+
+			// Stitch the chunks back together in file order
+			this.paintModel = paintModel;
+			this.errorMessage = "";
+			ArrayList<PaintCommand> paintCommands = new ArrayList<PaintCommand>();
+			int lineOffset = 0;
+			for (int i = 0; i < chunks.size(); i++) {
+				PaintFileChunk chunk = chunks.get(i);
+				if (chunk.endState == ERROR) {
+					this.lineNumber = lineOffset + chunk.parser.lineNumber;
+					this.error(chunk.parser.errorReason);
+					return false;
+				}
+				if (chunk.endState != 1 && i < chunks.size() - 1) {
+					// The chunk ended inside a shape or after the end of the file,
+					// so the next chunk was parsed in the wrong state.
+					return this.parse(new MappedPaintFileScanner(channel, 0, size), paintModel);
+				}
+				paintCommands.addAll(chunk.paintCommands);
+				lineOffset += chunk.lineCount;
+			}
+			this.paintModel.load(paintCommands);
+			return true;
+		}
+	}
+
+	/**
+	 * Wait for all of futures, in order.
+	 * @return the results of futures
+	 * @throws IOException if any of them failed
+	 */
+	private static <T> ArrayList<T> getAll(List<Future<T>> futures) throws IOException {
+		ArrayList<T> results = new ArrayList<T>();
+		try {
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CancellationException) {
+				throw (CancellationException) e.getCause();
+			}
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * Parse the lines handed over by scanner as a Paint Save File Format file.
+	 * @param scanner the scanner over the open file to parse
+	 * @param paintModel the paint model to add the commands to
+	 * @return whether the complete file was successfully parsed
+	 */
+	boolean parse(PaintFileScanner scanner, PaintModel paintModel) {
 		this.paintModel = paintModel;
 		this.errorMessage="";
-		
-		// During the parse, we will be building one of the 
-		// following commands. As we parse the file, we modify 
-		// the appropriate command.
-		
+
 		ArrayList<PaintCommand> paintCommands = new ArrayList<PaintCommand>();
+		if (this.parse(scanner, 0, paintCommands) == ERROR) {
+			return false;
+		}
+		this.paintModel.load(paintCommands);
+
+		return true;
+	}
+
+	/**
+	 * Run the parse state machine over the lines handed over by scanner,
+	 * starting in state, and add each completed shape to paintCommands.
+	 * State 0 expects the start of the file and state 1 expects the start
+	 * of a shape or the end of the file.
+	 * @param scanner the scanner over the lines to parse
+	 * @param state the state to start in
+	 * @param paintCommands the list the parsed commands are added to
+	 * @return the state at the end of the input, or ERROR
+	 */
+	int parse(PaintFileScanner scanner, int state, ArrayList<PaintCommand> paintCommands) {
+		// During the parse, we will be building one of the
+		// following commands. As we parse the file, we modify
+		// the appropriate command.
+
 		Point point = new Point(0,0);
-		
-		CircleCommand circleCommand = null; 
+
+		CircleCommand circleCommand = null;
 		RectangleCommand rectangleCommand = null;
 		SquiggleCommand squiggleCommand = null;
-		
-		try {	
-			int state=0; 
-			Matcher m = null;
-			String l;
+
+		long reported = scanner.getPosition(); // bytes up to here are reported to progressMonitor
+		int lines = 0;
+
+		try {
 			this.lineNumber=0;
-			while ((l = inputStream.readLine()) != null) {
-				this.lineNumber++;
-				l = l.replaceAll("\\s*", "");
-				if (l.equals("")) {
-					continue;
+			while (scanner.nextLine()) {
+				this.lineNumber = scanner.getLineNumber();
+				if (this.progressMonitor != null && ++lines % PROGRESS_LINES == 0) {
+					reported = this.reportProgress(scanner, reported);
 				}
 				switch(state){
 					case 0:
-						m=pFileStart.matcher(l);
-						if(m.matches()){
+						if(scanner.lineEquals("PaintSaveFileVersion1.0")){
 							state=1;
 							break;
 						}
 						else {
 							error("Expected Start of Paint Save File");
-							return false;
+							return ERROR;
 						}
 					case 1: // Looking for the start of a new object or end of the save file
-						m = pFileEnd.matcher(l);
-						if (m.matches()){
+						if (scanner.lineEquals("EndPaintSaveFile")){
 							state = 17;
 							break;
 						}
-						m=pCircleStart.matcher(l);
-						if(m.matches()){
+						if(scanner.lineEquals("Circle")){
 							circleCommand = new CircleCommand(point,0);
 							state=2;
 							break;
 						}
-						m = pRectangleStart.matcher(l);
-						if (m.matches()) {
+						if (scanner.lineEquals("Rectangle")) {
 							state = 3;
 							rectangleCommand = new RectangleCommand(point, point);
 							break;
 						}
-						m = pSquiggleStart.matcher(l);
-						if (m.matches()) {
+						if (scanner.lineEquals("Squiggle")) {
 							state = 4;
 							squiggleCommand = new SquiggleCommand();
 							break;
 						}
 						else {
 							error("Expected Start of Shape Save File");
-							return false;
+							return ERROR;
 						}
 					case 2:
-						m = pColor.matcher(l);
-						if(m.matches()) {
-							cA = this.colorSet(m.group(1), m.group(2), m.group(3));
+						if(this.matchColor(scanner)) {
 							state = 5;
 							if ((cA[0] < 0 || cA[0] > 255) || (cA[1] < 0 || cA[1] > 255) || (cA[2] < 0 || cA[2] > 255)) {
 								error("Expected valid color value(s)");
-								return false;
+								return ERROR;
 							}
 							circleCommand.setColor(Color.rgb(cA[0], cA[1], cA[2]));
 							break;
 						}
 						else {
 							error("Expected Start of Circle Color");
-							return false;
+							return ERROR;
 						}
 					case 3:
-						m = pColor.matcher(l);
-						if (m.matches()) {
-							cA = this.colorSet(m.group(1), m.group(2), m.group(3));
+						if (this.matchColor(scanner)) {
 							if ((cA[0] < 0 || cA[0] > 255) || (cA[1] < 0 || cA[1] > 255) || (cA[2] < 0 || cA[2] > 255)) {
 								error("Expected valid color value(s)");
-								return false;
+								return ERROR;
 							}
 							rectangleCommand.setColor(Color.rgb(cA[0], cA[1], cA[2]));
 							state = 6;
@@ -178,15 +320,13 @@ public class PaintFileParser {
 						}
 						else {
 							error("Expected Start of Rectangle Color");
-							return false;
+							return ERROR;
 						}
 					case 4:
-						m = pColor.matcher(l);
-						if (m.matches()) {
-							cA = this.colorSet(m.group(1), m.group(2), m.group(3));
+						if (this.matchColor(scanner)) {
 							if ((cA[0] < 0 || cA[0] > 255) || (cA[1] < 0 || cA[1] > 255) || (cA[2] < 0 || cA[2] > 255)) {
 								error("Expected valid color value(s)");
-								return false;
+								return ERROR;
 							}
 							squiggleCommand.setColor(Color.rgb(cA[0], cA[1], cA[2]));
 							state = 7;
@@ -194,194 +334,196 @@ public class PaintFileParser {
 						}
 						else {
 							error("Expected Start of Squiggle Color");
-							return false;
+							return ERROR;
 						}
 					case 5:
-						m = pFilled.matcher(l);
-						if (m.matches()) {
+						if (scanner.lineEquals("filled:true") || scanner.lineEquals("filled:false")) {
 							state = 8;
-							circleCommand.setFill(Boolean.parseBoolean(m.group(1)));
+							circleCommand.setFill(scanner.lineEquals("filled:true"));
 							break;
 						}
 						else {
 							error("Expected Start of Circle Filled");
-							return false;
+							return ERROR;
 						}
 					case 6:
-						m = pFilled.matcher(l);
-						if (m.matches()) {
+						if (scanner.lineEquals("filled:true") || scanner.lineEquals("filled:false")) {
 							state = 9;
-							rectangleCommand.setFill(Boolean.parseBoolean(m.group(1)));
+							rectangleCommand.setFill(scanner.lineEquals("filled:true"));
 							break;
 						}
 						else {
 							error("Expected Start of Rectangle Filled");
-							return false;
+							return ERROR;
 						}
 					case 7:
-						m = pFilled.matcher(l);
-						if (m.matches()) {
-							squiggleCommand.setFill(Boolean.parseBoolean(m.group(1)));
+						if (scanner.lineEquals("filled:true") || scanner.lineEquals("filled:false")) {
+							squiggleCommand.setFill(scanner.lineEquals("filled:true"));
 							state = 10;
 							break;
 						}
 						else {
 							error("Expected Start of Squiggle Filled");
-							return false;
+							return ERROR;
 						}
 					case 8:
-						m = pCircleCenter.matcher(l);
-						if (m.matches()) {
-							circleCommand.setCentre(this.pointSet(m.group(1), m.group(2)));
+						if (this.matchPoint(scanner, "center:", false)) {
+							circleCommand.setCentre(new Point(pointX, pointY));
 							state = 11;
 							break;
 						}
 						else {
 							error("Expected Start of Circle Center");
-							return false;
+							return ERROR;
 						}
 					case 9:
-						m = pRectangleP1.matcher(l);
-						if (m.matches()) {
-							rectangleCommand.setP1(this.pointSet(m.group(1), m.group(2)));
+						if (this.matchPoint(scanner, "p1:", false)) {
+							rectangleCommand.setP1(new Point(pointX, pointY));
 							state = 12;
 							break;
 						}
 						else {
 							error("Expected Start of Rectangle P1");
-							return false;
+							return ERROR;
 						}
 					case 10:
-						m = pSquiggleStartPoints.matcher(l);
-						if (m.matches()) {
+						if (scanner.lineEquals("points")) {
 							state = 13;
 							break;
 						}
 						else {
 							error("Expected Start of Squiggle Points");
-							return false;
+							return ERROR;
 						}
 					case 11:
-						m = pCircleRadius.matcher(l);
-						if (m.matches()) {
-							circleCommand.setRadius(Integer.parseInt(m.group(1)));
+						if (this.matchRadius(scanner)) {
+							circleCommand.setRadius(radius);
 							paintCommands.add(circleCommand);
 							state = 14;
 							break;
 						}
 						else {
 							error("Expected Start of Circle Radius");
-							return false;
+							return ERROR;
 						}
 					case 12:
-						m = pRectangleP2.matcher(l);
-						if (m.matches()) {
+						if (this.matchPoint(scanner, "p2:", true)) {
 							state = 15;
-							rectangleCommand.setP2(this.pointSet(m.group(1), m.group(2)));
+							rectangleCommand.setP2(new Point(pointX, pointY));
 							paintCommands.add(rectangleCommand);
 							break;
 						}
 						else {
 							error("Expected Start of Rectangle P2");
-							return false;
+							return ERROR;
 						}
 					case 13:
-						m = pSquigglePoint.matcher(l);
-						if (m.matches()) {
+						if (this.matchPoint(scanner, "point:", true)) {
 							state = 13;
-							squiggleCommand.add(this.pointSet(m.group(1), m.group(2)));
+							squiggleCommand.add(pointX, pointY);
 							break;
 						}
-						Matcher t = pSquiggleEndPoints.matcher(l);
-						if (t.matches()) {
+						if (scanner.lineEquals("endpoints")) {
 							state = 16;
 							paintCommands.add(squiggleCommand);
 							break;
 						}
 						else {
 							error("Expected Start of Squiggle End Points");
-							return false;
+							return ERROR;
 						}
 					case 14:
-						m = pCircleEnd.matcher(l);
-						if (m.matches()) {
+						if (scanner.lineEquals("EndCircle")) {
 							state = 1;
 							break;
 						}
 						else {
 							error("Expected End of Circle End Save File");
-							return false;
+							return ERROR;
 						}
 					case 15:
-						m = pRectangleEnd.matcher(l);
-						if (m.matches()) {
+						if (scanner.lineEquals("EndRectangle")) {
 							state = 1;
 							break;
 						}
 						else {
 							error("Expected End of Rectangle End Save File");
-							return false;
+							return ERROR;
 						}
 					case 16:
-						m = pSquiggleEnd.matcher(l);
-						if (m.matches()) {
+						if (scanner.lineEquals("EndSquiggle")) {
 							state = 1;
 							break;
 						}
 						else {
 							error("Expected End of Squiggle End Save File");
-							return false;
+							return ERROR;
 						}
 					case 17:
-						if (l.equals("")) {
-							break;
-						}
-						else {
-							error("File did not end correctly");
-							return false;
-						}
+						error("File did not end correctly");
+						return ERROR;
 				}
 			}
-		}  
-		catch (Exception e){
-			
 		}
-		this.paintModel.load(paintCommands);
+		catch (IOException e){
 
-		return true;
+		}
+		if (this.progressMonitor != null) {
+			this.reportProgress(scanner, reported);
+		}
+		return state;
 	}
-	
+
+	/**
+	 * Tell progressMonitor about the bytes scanned since reported.
+	 * @return the position reported up to now
+	 * @throws CancellationException if the parse has been cancelled
+	 */
+	private long reportProgress(PaintFileScanner scanner, long reported) {
+		if (this.progressMonitor.isCancelled()) {
+			throw new CancellationException();
+		}
+		long position = scanner.getPosition();
+		this.progressMonitor.worked(position - reported);
+		return position;
+	}
+
 	/**
-	 * Returns an array of colours, holding the red, green, and blue values.
-	 * @param colorR, which is an int denoting the red part of the colour.
-	 * @param colorG, which is an int denoting the green part of the colour.
-	 * @param colorB, which is an int denoting the blue part of the colour.
-	 * @return colorArray, which is an array of integers denoting the red, green,
-	 * and blue values respectively to the element they are in.
+	 * Match a line of the form color:r,g,b where each of r, g and b has
+	 * 1 to 3 digits, storing r, g and b in cA.
+	 * @param scanner the scanner positioned on the line to match
+	 * @return whether the line is a color line
 	 */
-	public int[] colorSet(String colorR, String colorG, String colorB) {
-		int r = Integer.parseInt(colorR);
-		int g = Integer.parseInt(colorG);
-		int b = Integer.parseInt(colorB);
-		int[] colorArray = {r,g,b};
-		return colorArray;
+	private boolean matchColor(PaintFileScanner scanner) {
+		return scanner.accept("color:")
+				&& (cA[0] = scanner.acceptInt(3, false)) != PaintFileScanner.NO_INT && scanner.accept(",")
+				&& (cA[1] = scanner.acceptInt(3, false)) != PaintFileScanner.NO_INT && scanner.accept(",")
+				&& (cA[2] = scanner.acceptInt(3, false)) != PaintFileScanner.NO_INT && scanner.atLineEnd();
 	}
-	
+
+	/**
+	 * Match a line of the form radius:r where r has any number of digits,
+	 * storing r in radius.
+	 * @param scanner the scanner positioned on the line to match
+	 * @return whether the line is a radius line
+	 */
+	private boolean matchRadius(PaintFileScanner scanner) {
+		return scanner.accept("radius:")
+				&& (radius = scanner.acceptInt(0, false)) != PaintFileScanner.NO_INT && scanner.atLineEnd();
+	}
+
 	/**
-	 * Changes the group's information to an int so that an actual
-	 * Point object can be made out of it. Returns a point then where the
-	 * x coordinate is the first group and the y coordinate is the second 
-	 * group.
-	 * @param x, which is a String denoting the x coordinate of the point
-	 * @param y  which is a String denoting the y coordinate of the point
-	 * @return point, which is Point object that has an x and y coordinate. 
+	 * Match a line of the form label(x,y) where each of x and y has 1 to 3
+	 * digits, storing x and y in pointX and pointY.
+	 * @param scanner the scanner positioned on the line to match
+	 * @param label the label before the point, e.g. "p1:"
+	 * @param signed whether x and y may be negative
+	 * @return whether the line is a point line with the given label
 	 */
-	public Point pointSet(String x, String y) {
-		Point point;
-		int xPoint = Integer.parseInt(x);
-		int yPoint = Integer.parseInt(y);
-		point = new Point(xPoint, yPoint);
-		return point;
+	private boolean matchPoint(PaintFileScanner scanner, String label, boolean signed) {
+		return scanner.accept(label) && scanner.accept("(")
+				&& (pointX = scanner.acceptInt(3, signed)) != PaintFileScanner.NO_INT && scanner.accept(",")
+				&& (pointY = scanner.acceptInt(3, signed)) != PaintFileScanner.NO_INT && scanner.accept(")")
+				&& scanner.atLineEnd();
 	}
-	
 }
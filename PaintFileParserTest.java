@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.regex.Matcher;
@@ -43,6 +44,20 @@ public class PaintFileParserTest {
 			assertEquals(fileName + ": Error Message", expectedLine, reportedLine);
 		}
 		lineInput.close();
+
+		// The memory mapped loader must report exactly the same result
+		PaintFileParser mappedParser = new PaintFileParser();
+		boolean mappedRetVal = mappedParser.parse(new File(fileName), new PaintModel());
+		assertEquals(fileName + ": Mapped parse result", retVal, mappedRetVal);
+		assertEquals(fileName + ": Mapped parse error message", errorMessage, mappedParser.getErrorMessage());
+
+		// So must the parallel parse, even when the file is split into many small chunks
+		PaintFileParser parallelParser = new PaintFileParser();
+		PaintModel parallelModel = new PaintModel();
+		boolean parallelRetVal = parallelParser.parseParallel(new File(fileName), parallelModel, 16);
+		assertEquals(fileName + ": Parallel parse result", retVal, parallelRetVal);
+		assertEquals(fileName + ": Parallel parse error message", errorMessage, parallelParser.getErrorMessage());
+		assertEquals(fileName + ": Parallel parse commands", paintModel.getCommands().size(), parallelModel.getCommands().size());
 	}
 
 	@Test
@@ -0,0 +1,149 @@
+package ca.utoronto.utm.paint;
+
+import java.io.IOException;
+
+/**
+ * Splits a Version 1.0 Paint Save File into normalized lines, one character
+ * at a time. Following the normative rules of the format, blank lines are
+ * skipped and all white space is dropped from the remaining lines, so the
+ * parser only ever sees lines like "point:(87,84)". The current line is kept
+ * in a reusable char buffer, and the match methods below consume it from
+ * left to right without creating any Strings or regular expressions.
+ *
+ * Subclasses supply the characters through read().
+ */
+abstract class PaintFileScanner {
+	/**
+	 * Returned by acceptInt when no acceptable integer is at the cursor.
+	 */
+	static final int NO_INT = Integer.MIN_VALUE;
+
+	private char[] line = new char[128]; // the current normalized line
+	private int length = 0; // number of chars in line
+	private int position = 0; // the match cursor into line
+	private int lineNumber = 0; // physical line number of the current line
+	private boolean skipLF = false; // the previous line ended with '\r'
+
+	/**
+	 * Return the next character of the input, or -1 at the end of the input.
+	 * @return the next character, or -1
+	 * @throws IOException
+	 */
+	protected abstract int read() throws IOException;
+
+	/**
+	 * @return how far into the input read has got, in bytes or characters
+	 */
+	protected abstract long getPosition();
+
+	/**
+	 * Advance to the next non-blank line. Lines end at '\n', '\r' or "\r\n",
+	 * the same as BufferedReader.readLine, so blank lines still count towards
+	 * the line number.
+	 * @return whether there was another non-blank line
+	 * @throws IOException
+	 */
+	public boolean nextLine() throws IOException {
+		while (true) {
+			int c = this.read();
+			if (this.skipLF) {
+				this.skipLF = false;
+				if (c == '\n') {
+					c = this.read();
+				}
+			}
+			if (c == -1) {
+				return false;
+			}
+			this.lineNumber++;
+			this.length = 0;
+			this.position = 0;
+			while (c != -1 && c != '\n' && c != '\r') {
+				if (c != ' ' && c != '\t' && c != '\f' && c != '\u000B') {
+					if (this.length == this.line.length) {
+						char[] grown = new char[this.line.length * 2];
+						System.arraycopy(this.line, 0, grown, 0, this.length);
+						this.line = grown;
+					}
+					this.line[this.length++] = (char) c;
+				}
+				c = this.read();
+			}
+			this.skipLF = (c == '\r');
+			if (this.length > 0) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return the physical line number of the current line, starting at 1
+	 */
+	public int getLineNumber() {
+		return this.lineNumber;
+	}
+
+	/**
+	 * @param keyword a keyword with its white space removed, e.g. "EndCircle"
+	 * @return whether the whole current line is keyword
+	 */
+	public boolean lineEquals(String keyword) {
+		this.position = 0;
+		return this.length == keyword.length() && this.accept(keyword);
+	}
+
+	/**
+	 * If the line continues with text at the cursor, move the cursor past it.
+	 * @param text the text expected at the cursor
+	 * @return whether text was at the cursor
+	 */
+	public boolean accept(String text) {
+		int n = text.length();
+		if (this.length - this.position < n) {
+			return false;
+		}
+		for (int i = 0; i < n; i++) {
+			if (this.line[this.position + i] != text.charAt(i)) {
+				return false;
+			}
+		}
+		this.position += n;
+		return true;
+	}
+
+	/**
+	 * Parse a decimal integer at the cursor, straight from the line buffer.
+	 * @param maxDigits the most digits allowed, or 0 for any number of digits
+	 * @param signed whether a leading '-' is allowed
+	 * @return the integer, or NO_INT if there is no acceptable integer at the cursor
+	 */
+	public int acceptInt(int maxDigits, boolean signed) {
+		int i = this.position;
+		boolean negative = false;
+		if (signed && i < this.length && this.line[i] == '-') {
+			negative = true;
+			i++;
+		}
+		int start = i;
+		long value = 0;
+		while (i < this.length && this.line[i] >= '0' && this.line[i] <= '9') {
+			value = value * 10 + (this.line[i] - '0');
+			i++;
+			if ((maxDigits > 0 && i - start > maxDigits) || value > Integer.MAX_VALUE) {
+				return NO_INT;
+			}
+		}
+		if (i == start) {
+			return NO_INT;
+		}
+		this.position = i;
+		return (int) (negative ? -value : value);
+	}
+
+	/**
+	 * @return whether the cursor has consumed the whole current line
+	 */
+	public boolean atLineEnd() {
+		return this.position == this.length;
+	}
+}
@@ -0,0 +1,319 @@
+package ca.utoronto.utm.paint;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Measures the work Paint does: repaints of the PaintPanel and how long
+ * they take, the frames they are grouped into and the commands each frame
+ * executes, the notifications PaintModel passes on, the throughput of the
+ * last load and save, roughly how much heap the commands take, and how
+ * well the TileCache is working.
+ *
+ * The metrics are published over JMX under OBJECT_NAME, and can be shown
+ * on the canvas by PaintPanel. They are off unless the system property
+ * paint.metrics is true, they are enabled over JMX, or the overlay shows;
+ * hiding the overlay leaves them as JMX set them. While off, each measuring
+ * point costs one volatile read.
+ *
+ * Repaints, frames and tiles are measured on the JavaFX thread only, so
+ * their counts have a single writer; notifications may come from parser
+ * threads.
+ */
+public class PaintMetrics implements PaintMetricsMBean {
+	static final String OBJECT_NAME = "ca.utoronto.utm.paint:type=PaintMetrics";
+
+	private static final long SECOND = 1000000000L; // in nanoseconds
+	private static final long REFERENCE_BYTES = 8; // a command's slot in the list, and in the index
+
+	private static final PaintMetrics metrics = new PaintMetrics();
+
+	private volatile boolean enabled = Boolean.getBoolean("paint.metrics"); // by the property or over JMX
+	private volatile boolean overlayShown = false;
+	private volatile boolean measuring = this.enabled; // enabled or overlayShown, read at each measuring point
+
+	private volatile long repaintCount, repaintNanos, maxRepaintNanos;
+	private volatile long frameCount, lastFrameNanos;
+	private volatile long commandsExecuted; // so far in this frame
+	private volatile long commandsExecutedLastFrame;
+
+	private LongAdder notifications = new LongAdder();
+	private long windowStart = System.nanoTime(); // when the current second of notifications began
+	private long windowNotifications = 0; // notifications before windowStart
+	private double notificationsPerSecond = 0; // over the last whole second
+
+	private volatile double parseBytesPerSecond, parseShapesPerSecond;
+	private volatile double saveBytesPerSecond, saveShapesPerSecond;
+
+	private volatile long commandListBytes;
+
+	private volatile long tileHits, tileMisses, tileEvictions;
+	private volatile long tileCacheBytes;
+
+	/**
+	 * @return the metrics of this Paint
+	 */
+	static PaintMetrics get() {
+		return metrics;
+	}
+
+	/**
+	 * Publish the metrics in the platform MBean server, under OBJECT_NAME.
+	 */
+	static void register() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+		} catch (JMException e) {
+			e.printStackTrace(); // Paint works without them
+		}
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	@Override
+	public synchronized void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		this.measuring = enabled || this.overlayShown;
+	}
+
+	/**
+	 * The overlay showing the metrics was shown or hidden. The metrics are
+	 * measured while it shows, whether or not they are enabled.
+	 */
+	synchronized void setOverlayShown(boolean shown) {
+		this.overlayShown = shown;
+		this.measuring = this.enabled || shown;
+	}
+
+	@Override
+	public synchronized void reset() {
+		this.repaintCount = this.repaintNanos = this.maxRepaintNanos = 0;
+		this.frameCount = this.lastFrameNanos = 0;
+		this.commandsExecuted = this.commandsExecutedLastFrame = 0;
+		this.notifications.reset();
+		this.windowStart = System.nanoTime();
+		this.windowNotifications = 0;
+		this.notificationsPerSecond = 0;
+		this.parseBytesPerSecond = this.parseShapesPerSecond = 0;
+		this.saveBytesPerSecond = this.saveShapesPerSecond = 0;
+		this.tileHits = this.tileMisses = this.tileEvictions = 0;
+	}
+
+	/**
+	 * @return the time to pass to repaintFinished or frameFinished, or 0 while disabled
+	 */
+	long start() {
+		return this.measuring ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * A repaint that began at start, from start(), has executed commands.
+	 */
+	void repaintFinished(long start, int commands) {
+		if (start == 0) {
+			return;
+		}
+		long nanos = System.nanoTime() - start;
+		this.repaintCount++;
+		this.repaintNanos += nanos;
+		this.maxRepaintNanos = Math.max(this.maxRepaintNanos, nanos);
+		this.commandsExecuted += commands;
+	}
+
+	/**
+	 * The frame that began at start, from start(), is done. Also take the
+	 * heap the commands of paintModel take, which it keeps a count of.
+	 */
+	void frameFinished(long start, PaintModel paintModel) {
+		if (start == 0) {
+			return;
+		}
+		long now = System.nanoTime();
+		this.frameCount++;
+		this.lastFrameNanos = now - start;
+		this.commandsExecutedLastFrame = this.commandsExecuted;
+		this.commandsExecuted = 0;
+		this.commandListBytes = 2 * REFERENCE_BYTES * paintModel.getCommands().size() + paintModel.getCommandBytes();
+	}
+
+	/**
+	 * PaintModel passed on a notification.
+	 */
+	void notified() {
+		if (this.measuring) {
+			this.notifications.increment();
+		}
+	}
+
+	/**
+	 * A file of bytes holding shapes was parsed in nanos.
+	 */
+	void parsed(long bytes, int shapes, long nanos) {
+		if (this.measuring && nanos > 0) {
+			this.parseBytesPerSecond = (double) bytes * SECOND / nanos;
+			this.parseShapesPerSecond = (double) shapes * SECOND / nanos;
+		}
+	}
+
+	/**
+	 * shapes were saved as a file of bytes in nanos.
+	 */
+	void saved(long bytes, int shapes, long nanos) {
+		if (this.measuring && nanos > 0) {
+			this.saveBytesPerSecond = (double) bytes * SECOND / nanos;
+			this.saveShapesPerSecond = (double) shapes * SECOND / nanos;
+		}
+	}
+
+	/**
+	 * A TileCache had the tile asked for.
+	 */
+	void tileHit() {
+		if (this.measuring) {
+			this.tileHits++;
+		}
+	}
+
+	/**
+	 * A TileCache had to draw the tile asked for.
+	 */
+	void tileMissed() {
+		if (this.measuring) {
+			this.tileMisses++;
+		}
+	}
+
+	/**
+	 * A TileCache dropped its least recently used tile to stay within budget.
+	 */
+	void tileEvicted() {
+		if (this.measuring) {
+			this.tileEvictions++;
+		}
+	}
+
+	/**
+	 * The tiles of a TileCache now take bytes.
+	 */
+	void tileCacheSize(long bytes) {
+		this.tileCacheBytes = bytes;
+	}
+
+	@Override
+	public long getRepaintCount() {
+		return this.repaintCount;
+	}
+
+	@Override
+	public double getAverageRepaintMillis() {
+		long count = this.repaintCount;
+		return count == 0 ? 0 : this.repaintNanos / 1e6 / count;
+	}
+
+	@Override
+	public double getMaxRepaintMillis() {
+		return this.maxRepaintNanos / 1e6;
+	}
+
+	@Override
+	public long getFrameCount() {
+		return this.frameCount;
+	}
+
+	@Override
+	public double getLastFrameMillis() {
+		return this.lastFrameNanos / 1e6;
+	}
+
+	@Override
+	public long getCommandsExecutedLastFrame() {
+		return this.commandsExecutedLastFrame;
+	}
+
+	/**
+	 * The rate is over the last whole second, measured when this is read
+	 * at least a second after the previous measurement.
+	 */
+	@Override
+	public synchronized double getNotificationsPerSecond() {
+		long now = System.nanoTime();
+		if (now - this.windowStart >= SECOND) {
+			long total = this.notifications.sum();
+			this.notificationsPerSecond = (double) (total - this.windowNotifications) * SECOND / (now - this.windowStart);
+			this.windowStart = now;
+			this.windowNotifications = total;
+		}
+		return this.notificationsPerSecond;
+	}
+
+	@Override
+	public double getParseBytesPerSecond() {
+		return this.parseBytesPerSecond;
+	}
+
+	@Override
+	public double getParseShapesPerSecond() {
+		return this.parseShapesPerSecond;
+	}
+
+	@Override
+	public double getSaveBytesPerSecond() {
+		return this.saveBytesPerSecond;
+	}
+
+	@Override
+	public double getSaveShapesPerSecond() {
+		return this.saveShapesPerSecond;
+	}
+
+	@Override
+	public long getCommandListBytes() {
+		return this.commandListBytes;
+	}
+
+	@Override
+	public long getTileHits() {
+		return this.tileHits;
+	}
+
+	@Override
+	public long getTileMisses() {
+		return this.tileMisses;
+	}
+
+	@Override
+	public long getTileEvictions() {
+		return this.tileEvictions;
+	}
+
+	@Override
+	public long getTileCacheBytes() {
+		return this.tileCacheBytes;
+	}
+
+	/**
+	 * @return the metrics as a few lines of text, for the overlay
+	 */
+	String summary() {
+		return String.format("frame %.2f ms, %d commands executed%n"
+				+ "repaints %d, average %.2f ms, max %.2f ms%n"
+				+ "notifications %.0f/s%n"
+				+ "commands %d KB%n"
+				+ "last parse %.1f MB/s, %.0f shapes/s%n"
+				+ "last save %.1f MB/s, %.0f shapes/s%n"
+				+ "tiles %d hits, %d misses, %d evicted, %d KB",
+				this.getLastFrameMillis(), this.getCommandsExecutedLastFrame(),
+				this.getRepaintCount(), this.getAverageRepaintMillis(), this.getMaxRepaintMillis(),
+				this.getNotificationsPerSecond(),
+				this.getCommandListBytes() >> 10,
+				this.getParseBytesPerSecond() / 1e6, this.getParseShapesPerSecond(),
+				this.getSaveBytesPerSecond() / 1e6, this.getSaveShapesPerSecond(),
+				this.getTileHits(), this.getTileMisses(), this.getTileEvictions(), this.getTileCacheBytes() >> 10);
+	}
+}
@@ -0,0 +1,48 @@
+package ca.utoronto.utm.paint;
+
+/**
+ * The management interface of PaintMetrics, as JMX shows it. Times are in
+ * milliseconds, and rates are per second.
+ */
+public interface PaintMetricsMBean {
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Zero every count.
+	 */
+	void reset();
+
+	long getRepaintCount();
+
+	double getAverageRepaintMillis();
+
+	double getMaxRepaintMillis();
+
+	long getFrameCount();
+
+	double getLastFrameMillis();
+
+	long getCommandsExecutedLastFrame();
+
+	double getNotificationsPerSecond();
+
+	double getParseBytesPerSecond();
+
+	double getParseShapesPerSecond();
+
+	double getSaveBytesPerSecond();
+
+	double getSaveShapesPerSecond();
+
+	long getCommandListBytes();
+
+	long getTileHits();
+
+	long getTileMisses();
+
+	long getTileEvictions();
+
+	long getTileCacheBytes();
+}
@@ -4,40 +4,359 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.Set;
 
 import javafx.scene.canvas.GraphicsContext;
 
 public class PaintModel extends Observable implements Observer {
-	
 	public void save() {
 		
 	}
 	
 	public void load(ArrayList<PaintCommand> pC) {
+		this.beginBatch();
 		for (int i = 0; i < pC.size(); i++) { // 2nd change.
 			this.addCommand(pC.get(i));
 	    }
+		this.endBatch();
 	}
 	
 	public void reset(){
+		this.undoManager.clear();
+		this.beginBatch();
 		for(PaintCommand c: this.commands){
 			c.deleteObserver(this);
 		}
 		this.commands.clear();
-		this.setChanged();
-		this.notifyObservers();
+		this.index.clear();
+		this.commandBytes = 0;
+		this.snapshots = new PaintSnapshot.Builder();
+		this.changed.clear();
+		this.copied.clear();
+		this.activeCommand = null;
+		this.selection.clear();
+		this.notifyChange(null);
+		this.endBatch();
 	}
 	
 	public void addCommand(PaintCommand command){
 		this.commands.add(command);
+		this.index.add(command);
+		this.snapshots.add(command);
+		if(command != this.activeCommand){
+			this.commandBytes += UndoManager.sizeOf(command);
+		}
 		command.addObserver(this);
+		PaintChange change = new PaintChange(command, command.getBounds(), false, this.commands.size()-1);
+		if(command != this.activeCommand){
+			this.notifyAdded(Collections.singletonList(command), change);
+		} else {
+			this.notifyChange(change);
+		}
+	}
+	
+	/**
+	 * Start a bulk change. Until the matching endBatch, observers are not
+	 * notified of each change; endBatch notifies them once, without a
+	 * PaintChange, if anything changed. Batches may be nested.
+	 */
+	public void beginBatch(){
+		this.batchDepth++;
+	}
+	
+	/**
+	 * End the bulk change started by the matching beginBatch.
+	 */
+	public void endBatch(){
+		this.batchDepth--;
+		if(this.batchDepth == 0 && this.batchChanged){
+			this.batchChanged = false;
+			this.notifyChange(null);
+		}
+	}
+	
+	/**
+	 * Notify our observers of change, or of a change to the whole model
+	 * if change is null, unless we are in the middle of a batch. The display
+	 * list is dropped if a committed command changed.
+	 */
+	private void notifyChange(PaintChange change){
+		if(change == null || (change.command != null && change.command != this.activeCommand)){
+			this.displayList = null; // a committed command changed
+		}
+		this.tell(change);
+	}
+	
+	/**
+	 * Notify our observers of change, which put commands on top of the
+	 * committed ones, appending them to the display list rather than
+	 * dropping it, so drawing on does not make the next repaint compile it.
+	 */
+	private void notifyAdded(List<PaintCommand> commands, PaintChange change){
+		if(this.displayList != null){
+			for(PaintCommand c: commands){
+				this.displayList.append(c);
+			}
+		}
+		this.tell(change);
+	}
+	
+	/**
+	 * Notify our observers of change, unless we are in the middle of a batch.
+	 */
+	private void tell(PaintChange change){
+		if(this.batchDepth > 0){
+			this.batchChanged = true;
+			return;
+		}
 		this.setChanged();
-		this.notifyObservers();
+		this.notifyObservers(change);
+	}
+	
+	/**
+	 * Add command as the one the user is in the middle of drawing. It stays
+	 * the active command, changing with each mouse drag, until finishCommand.
+	 * @param command the command being drawn
+	 */
+	public void startCommand(PaintCommand command){
+		if(this.activeCommand != null){
+			this.commandBytes += UndoManager.sizeOf(this.activeCommand); // left in the drawing unfinished
+		}
+		this.activeCommand = command;
+		this.addCommand(command);
+		this.undoManager.added(command, this.commands.size()-1);
+	}
+	
+	/**
+	 * Take command out of the drawing, as an edit that can be undone.
+	 * @param command a command in this model
+	 */
+	public void removeCommand(PaintCommand command){
+		int i = this.commands.lastIndexOf(command); // usually one of the last
+		if(i < 0) return;
+		this.remove(i);
+		this.undoManager.removed(command, i);
+	}
+	
+	/**
+	 * Add commands on top of the drawing, in order, as one edit that can be undone.
+	 */
+	public void addCommands(List<PaintCommand> commands){
+		this.undoManager.beginGroup();
+		for(PaintCommand c: commands){
+			this.addCommand(c);
+			this.undoManager.added(c, this.commands.size()-1);
+		}
+		this.undoManager.endGroup();
+	}
+	
+	/**
+	 * Add commands on top of the drawing, in order, notifying observers once
+	 * with a PaintChange listing them all. If the user is drawing the top
+	 * command they go just under it, so it still finishes on top. Like the
+	 * commands of a loaded file, they are not an edit that can be undone.
+	 */
+	void addCommandsTogether(List<PaintCommand> commands){
+		if(commands.isEmpty()) return;
+		int index = this.commands.size();
+		PaintCommand active = this.activeCommand;
+		if(active != null && this.commands.get(index-1) == active){
+			index--;
+		} else {
+			active = null; // none on top to stay above them
+		}
+		BoundingBox region = BoundingBox.EMPTY;
+		for(PaintCommand c: commands){
+			this.index.add(c);
+			this.snapshots.add(this.snapshots.size() - (active != null ? 1 : 0), c);
+			this.commandBytes += UndoManager.sizeOf(c);
+			c.addObserver(this);
+			region = region.union(c.getBounds());
+		}
+		this.commands.addAll(index, commands);
+		if(active != null){
+			this.index.remove(active); // and back on top
+			this.index.add(active);
+			this.undoManager.moved(active, this.commands.size()-1);
+		}
+		ArrayList<PaintCommand> added = new ArrayList<PaintCommand>(commands);
+		this.notifyAdded(added, new PaintChange(added, region, index));
+	}
+	
+	/**
+	 * Take commands out of the drawing, as one edit that can be undone.
+	 */
+	public void removeCommands(List<PaintCommand> commands){
+		this.undoManager.beginGroup();
+		for(PaintCommand c: new ArrayList<PaintCommand>(commands)){ // commands may be the selection
+			this.removeCommand(c);
+		}
+		this.undoManager.endGroup();
+	}
+	
+	/**
+	 * Put replacement in the drawing in place of the command at index, as an
+	 * edit that can be undone.
+	 */
+	void replace(int index, PaintCommand replacement){
+		PaintCommand command = this.set(index, replacement);
+		this.undoManager.replaced(command, replacement, index);
+	}
+	
+	/**
+	 * Put command in the drawing in place of the command at index, without
+	 * recording an edit. Observers are told the old command was removed from
+	 * index and command was put there.
+	 * @return the command that was at index
+	 */
+	PaintCommand set(int index, PaintCommand command){
+		PaintCommand old = this.commands.set(index, command);
+		this.index.replace(old, command);
+		this.snapshots.set(index, command);
+		this.commandBytes += UndoManager.sizeOf(command);
+		this.forget(old);
+		command.addObserver(this);
+		this.notifyChange(new PaintChange(old, old.getBounds(), true, index));
+		this.notifyChange(new PaintChange(command, command.getBounds(), false, index));
+		return old;
+	}
+	
+	/**
+	 * Put command back into the drawing at index, without recording an edit.
+	 * The command is drawn between its neighbours in the list.
+	 */
+	void insert(int index, PaintCommand command){
+		PaintCommand below = index > 0 ? this.commands.get(index-1) : null;
+		PaintCommand above = index < this.commands.size() ? this.commands.get(index) : null;
+		this.commands.add(index, command);
+		this.index.insert(command, below, above);
+		this.snapshots.add(index, command);
+		this.commandBytes += UndoManager.sizeOf(command);
+		command.addObserver(this);
+		this.notifyChange(new PaintChange(command, command.getBounds(), false, index));
+	}
+	
+	/**
+	 * Take the command at index out of the drawing, without recording an edit.
+	 */
+	void remove(int index){
+		PaintCommand command = this.commands.remove(index);
+		this.index.remove(command);
+		this.snapshots.remove(index);
+		this.forget(command);
+		this.notifyChange(new PaintChange(command, command.getBounds(), true, index));
+	}
+	
+	/**
+	 * Undo the most recent edit, redrawing only the region it touched.
+	 */
+	public void undo(){
+		this.undoManager.undo();
+	}
+	
+	/**
+	 * Redo the most recently undone edit.
+	 */
+	public void redo(){
+		this.undoManager.redo();
+	}
+	
+	public boolean canUndo(){
+		return this.undoManager.canUndo();
+	}
+	
+	public boolean canRedo(){
+		return this.undoManager.canRedo();
+	}
+	
+	/**
+	 * @return the undo history of this model
+	 */
+	UndoManager getUndoManager(){
+		return this.undoManager;
+	}
+	
+	/**
+	 * The user has finished drawing the active command, so it joins the
+	 * committed, unchanging part of the drawing.
+	 */
+	public void finishCommand(){
+		PaintCommand command = this.activeCommand;
+		if(command == null) return;
+		this.activeCommand = null;
+		this.commandBytes += UndoManager.sizeOf(command); // done growing
+		this.changed.remove(command); // it no longer changes, so snapshots can share it
+		PaintChange change = new PaintChange(command, command.getBounds());
+		if(command == this.commands.get(this.commands.size()-1)){
+			this.notifyAdded(Collections.singletonList(command), change); // on top of the committed commands
+		} else {
+			this.notifyChange(change);
+		}
+	}
+	
+	/**
+	 * Select commands, the ones Cut and Copy act on. Observers are notified
+	 * with a PaintChange without a command, covering the old and new selection.
+	 * @param selection commands in this model
+	 */
+	public void setSelection(List<PaintCommand> selection){
+		BoundingBox region = boundsOf(this.selection);
+		this.selection = new ArrayList<PaintCommand>(selection);
+		region = region.union(boundsOf(this.selection));
+		if(!region.isEmpty()){
+			this.notifyChange(new PaintChange(null, region));
+		}
+	}
+	
+	/**
+	 * @return the selected commands, in the order they were selected
+	 */
+	public List<PaintCommand> getSelection(){
+		return Collections.unmodifiableList(this.selection);
+	}
+	
+	private static BoundingBox boundsOf(List<PaintCommand> commands){
+		BoundingBox bounds = BoundingBox.EMPTY;
+		for(PaintCommand c: commands){
+			bounds = bounds.union(c.getBounds());
+		}
+		return bounds;
+	}
+	
+	/**
+	 * @return roughly how many bytes of heap the commands take, as
+	 * UndoManager.sizeOf counts them, kept up to date as they change
+	 */
+	long getCommandBytes() {
+		PaintCommand active = this.activeCommand;
+		return this.commandBytes + (active != null ? UndoManager.sizeOf(active) : 0);
+	}
+	
+	/**
+	 * @return the command the user is drawing, or null
+	 */
+	public PaintCommand getActiveCommand() {
+		return this.activeCommand;
 	}
 	
 	private ArrayList<PaintCommand> commands = new ArrayList<PaintCommand>();
+	private SpatialIndex index = new SpatialIndex(); // the commands by where they draw
+	private PaintCommand activeCommand; // the command being drawn, if any
+	private long commandBytes = 0; // roughly the heap the commands but the active one take, by UndoManager.sizeOf
+	private ArrayList<PaintCommand> selection = new ArrayList<PaintCommand>(); // what Cut and Copy act on
+	private UndoManager undoManager = new UndoManager(this); // the edits that can be undone
+	private DisplayList displayList; // the committed commands compiled, or null until needed
+	private PaintSnapshot.Builder snapshots = new PaintSnapshot.Builder(); // the commands, or copies of them, for snapshots
+	private Set<PaintCommand> changed = Collections.newSetFromMap(new IdentityHashMap<PaintCommand, Boolean>()); // commands that may differ from what snapshots has
+	private Set<PaintCommand> copied = Collections.newSetFromMap(new IdentityHashMap<PaintCommand, Boolean>()); // commands snapshots has copies of
+	private int batchDepth = 0; // number of unfinished beginBatch calls
+	private boolean batchChanged = false; // whether anything changed during the batch
 
 	public void executeAll(GraphicsContext g) {
 		for(PaintCommand c: this.commands){
@@ -45,17 +364,166 @@ public class PaintModel extends Observable implements Observer {
 		}
 	}
 	
+	/**
+	 * Execute, in order, the committed commands that draw inside region,
+	 * that is all of them except the active command, leaving out the detail
+	 * too small to see at scale. They are drawn from a DisplayList, compiled
+	 * for region and as much again on every side, and kept until a command
+	 * changes or a region outside it or a different scale is drawn, so
+	 * repainting an unchanged view, or panning it, rarely visits the commands.
+	 * @param g the GraphicsContext to draw on, in document coordinates
+	 * @param region the part of the document being redrawn, or null for all of it
+	 * @param scale canvas pixels per document pixel
+	 * @return the number of commands executed
+	 */
+	public int executeCommitted(GraphicsContext g, BoundingBox region, double scale) {
+		if(region != null && region.contains(this.index.getBounds())){
+			region = null; // everything is inside it
+		}
+		if(this.displayList == null || !this.displayList.covers(region, scale)){
+			BoundingBox compiled = region == null ? null : grow(region);
+			if(compiled != null && compiled.contains(this.index.getBounds())){
+				compiled = null;
+			}
+			List<PaintCommand> commands;
+			if(compiled == null && scale >= 1){
+				commands = this.commands;
+			} else {
+				// Pass over the commands under a canvas pixel across, which the display list leaves out
+				commands = this.index.query(compiled == null ? this.index.getBounds() : compiled, 1 / scale);
+			}
+			this.displayList = DisplayList.compile(commands, this.activeCommand, compiled, scale);
+		}
+		return this.displayList.execute(g, region);
+	}
+	
+	/**
+	 * Execute the committed commands that draw inside region, as
+	 * executeCommitted does, but from a DisplayList compiled for region alone
+	 * and not kept. For drawing into a cache of its own, such as a tile, so
+	 * a change costs a look at the commands in region, not around it.
+	 * @param region the part of the document being drawn
+	 * @param scale canvas pixels per document pixel
+	 * @return the number of commands executed
+	 */
+	int executeCommittedOnce(GraphicsContext g, BoundingBox region, double scale) {
+		DisplayList displayList = DisplayList.compile(this.index.query(region, 1 / scale), this.activeCommand, region, scale);
+		return displayList.execute(g, region);
+	}
+	
+	/**
+	 * @return region with its width added on the left and right, and its height above and below
+	 */
+	private static BoundingBox grow(BoundingBox region){
+		long w = (long)region.maxX - region.minX, h = (long)region.maxY - region.minY;
+		return BoundingBox.clamped(region.minX - w, region.minY - h, region.maxX + w, region.maxY + h);
+	}
+	
 	public ArrayList<PaintCommand> getCommands() {
 		return this.commands;
 	}
 	
 	/**
-	 * We Observe our model components, the PaintCommands
+	 * Take a snapshot of the drawing as it is now, for example so it can be
+	 * saved on another thread while the user keeps drawing. Finished
+	 * commands do not change, so it shares them; it holds copies only of the
+	 * active command and of commands that notified a change since the last
+	 * snapshot. The model keeps its commands in a PaintSnapshot.Builder as
+	 * they are added, inserted and removed, so a snapshot takes time in the
+	 * number of those copies, each found in the builder by a binary search,
+	 * not in the size of the drawing.
+	 * @return the commands in drawing order, never changing
+	 */
+	public PaintSnapshot snapshot() {
+		PaintCommand active = this.activeCommand;
+		if(active != null && !this.copied.contains(active)){
+			this.changed.add(active);
+		}
+		// Commands copied before that have since stopped changing are shared from now on
+		Iterator<PaintCommand> i = this.copied.iterator();
+		while(i.hasNext()){
+			PaintCommand c = i.next();
+			if(c != active && !this.changed.contains(c)){
+				this.snapshots.set(this.indexOf(c), c);
+				i.remove();
+			}
+		}
+		for(PaintCommand c: this.changed){
+			this.snapshots.set(this.indexOf(c), c.copy());
+			this.copied.add(c);
+		}
+		this.changed.clear();
+		return this.snapshots.snapshot();
+	}
+	
+	/**
+	 * @return the position of command, which is in the drawing, among the
+	 * commands, found by its z-order in the spatial index, which rises along them
+	 */
+	private int indexOf(PaintCommand command){
+		long order = this.index.order(command);
+		int low = 0, high = this.commands.size() - 1;
+		while(low <= high){
+			int middle = (low + high) >>> 1;
+			long o = this.index.order(this.commands.get(middle));
+			if(o < order){
+				low = middle + 1;
+			} else if(o > order){
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		throw new IllegalStateException("Command not in the drawing");
+	}
+	
+	/**
+	 * Stop observing command, which is out of the drawing, and drop it as
+	 * the active command, from the selection and from the commands to copy.
+	 */
+	private void forget(PaintCommand command){
+		command.deleteObserver(this);
+		if(command == this.activeCommand){
+			this.activeCommand = null;
+		} else {
+			this.commandBytes -= UndoManager.sizeOf(command);
+		}
+		this.selection.remove(command);
+		this.changed.remove(command);
+		this.copied.remove(command);
+	}
+	
+	/**
+	 * @param region a region of the canvas
+	 * @return the commands whose bounds intersect region, in drawing order
+	 */
+	public ArrayList<PaintCommand> getCommandsIn(BoundingBox region) {
+		return this.index.query(region);
+	}
+	
+	/**
+	 * @return the commands whose bounds contain the pixel (x, y), in drawing order
+	 */
+	public ArrayList<PaintCommand> getCommandsAt(int x, int y) {
+		return this.index.queryPoint(x, y);
+	}
+	
+	/**
+	 * We Observe our model components, the PaintCommands. They notify us with
+	 * the region they changed, which we pass on as a PaintChange, after
+	 * updating where the command sits in the spatial index.
 	 */
 	@Override
 	public void update(Observable o, Object arg) {
-		this.setChanged();
-		this.notifyObservers();
+		PaintMetrics.get().notified();
+		PaintCommand command = (PaintCommand)o;
+		this.changed.add(command);
+		this.index.update(command);
+		if(arg instanceof BoundingBox){
+			this.notifyChange(new PaintChange(command, (BoundingBox)arg));
+		} else {
+			this.notifyChange(null);
+		}
 	}
 	
 }
@@ -4,25 +4,74 @@ import java.util.Observable;
 import java.util.Observer;
 
 import javafx.event.EventHandler;
+import javafx.geometry.Pos;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
 
+/**
+ * Draws a PaintModel on two stacked canvases. The lower canvas holds the
+ * committed commands and keeps its pixels between repaints, so it acts as
+ * a cache of everything that is not changing. The upper canvas holds only
+ * the model's active command, the shape the user is dragging out, so each
+ * drag event redraws that one shape however large the drawing is, and the
+ * outlines of the selected commands.
+ *
+ * The canvases fill the panel and show the part of the document a Viewport
+ * maps onto them. The mouse wheel zooms about the mouse, and dragging with
+ * the middle button pans. Only the commands in view are drawn, with the
+ * detail too small to see at the current zoom left out. Zoomed out, where
+ * the view holds the most commands, and optionally at every zoom, the
+ * committed layer is drawn from a TileCache, so panning back over parts of
+ * the document already seen draws images rather than commands, and a
+ * change redraws only the tiles it touches.
+ *
+ * Changes to the model are not painted as they arrive. They are collected
+ * by a RepaintScheduler, which repaints at most once per JavaFX pulse.
+ * Each repaint and frame is measured by PaintMetrics, which an optional
+ * overlay shows in the corner of the canvas.
+ */
 class PaintPanel extends StackPane implements Observer, EventHandler<MouseEvent> {
 
+	private static final Color SELECTION_COLOR = Color.rgb(30, 144, 255);
+	private static final long OVERLAY_INTERVAL = 250000000L; // nanoseconds between overlay updates
+
 	private PaintModel model; 
-	private Canvas canvas;
+	private Canvas canvas; // the committed commands
+	private Canvas liveCanvas; // the active command
 	private ShapeManipulatorStrategy strategy;
+	private Viewport viewport = new Viewport();
+	private TileCache tileCache = new TileCache(Long.getLong("paint.tileCacheBytes", TileCache.DEFAULT_BUDGET));
+	private boolean tiled = false; // whether the committed layer is drawn from tileCache even when not zoomed out
+	private double panX, panY; // where the middle button was last dragged from
+	private RepaintScheduler scheduler = new RepaintScheduler(this);
+	private Label metricsOverlay = new Label(); // shows PaintMetrics when visible
+	private long overlayUpdated; // when metricsOverlay was last updated
 	
 	public PaintPanel(PaintModel model) {
 
 		this.canvas = new Canvas(500, 500);
-		this.getChildren().add(this.canvas);
+		this.liveCanvas = new Canvas(500, 500);
+		this.metricsOverlay.setVisible(false);
+		this.metricsOverlay.setMouseTransparent(true);
+		StackPane.setAlignment(this.metricsOverlay, Pos.TOP_LEFT);
+		this.getChildren().addAll(this.canvas, this.liveCanvas, this.metricsOverlay);
 		// The canvas is transparent, so the background color of the
 		// containing pane serves as the background color of the canvas.
 		this.setStyle("-fx-background-color: white");
-		this.canvas.addEventHandler(MouseEvent.ANY, this);
+		this.setMinSize(0, 0); // the canvases follow the panel, so do not hold it open
+		this.liveCanvas.addEventHandler(MouseEvent.ANY, this);
+		this.liveCanvas.addEventHandler(ScrollEvent.SCROLL, e -> {
+			if (e.getDeltaY() != 0) {
+				this.viewport.zoomAt(e.getDeltaY() > 0 ? 1 : -1, e.getX(), e.getY());
+				this.scheduler.repaint(null);
+			}
+		});
 		this.setPaintModel(model);
 		
 	}
@@ -37,27 +86,206 @@ class PaintPanel extends StackPane implements Observer, EventHandler<MouseEvent>
 			this.model.deleteObserver(this);
 		}
 		this.model = model;
+		this.tileCache.setPaintModel(model);
 		this.setShapeManipulatorStrategy(new ShapeManipulatorStrategy(this.model)); // set to the empty strategy
 		this.model.addObserver(this);
 		this.repaint();
 	}
 	
+	/**
+	 * Rebuild both layers from scratch.
+	 */
 	public void repaint() {
+		long start = PaintMetrics.get().start();
 		GraphicsContext g = this.canvas.getGraphicsContext2D();
-		g.clearRect(0, 0, this.getWidth(), this.getHeight());
-		this.model.executeAll(g);
+		g.clearRect(0, 0, this.canvas.getWidth(), this.canvas.getHeight());
+		int executed;
+		if (this.isTiled()) {
+			executed = this.tileCache.draw(g, this.viewport, this.canvasBounds());
+		} else {
+			g.save();
+			this.viewport.transform(g);
+			executed = this.model.executeCommitted(g, this.viewport.getVisibleRegion(), this.viewport.getScale());
+			g.restore();
+		}
+		PaintMetrics.get().repaintFinished(start, executed);
+		this.repaintLive(null);
+	}
+	
+	/**
+	 * Repaint only region of the committed layer: clip to it, clear it, and
+	 * redraw the committed commands that draw inside it, in order.
+	 * @param region the part of the document that changed
+	 */
+	public void repaint(BoundingBox region) {
+		BoundingBox r = this.viewport.toCanvas(region).intersection(this.canvasBounds());
+		if (r.isEmpty()) {
+			return; // out of view
+		}
+		long start = PaintMetrics.get().start();
+		GraphicsContext g = this.canvas.getGraphicsContext2D();
+		g.save();
+		g.beginPath();
+		g.rect(r.minX, r.minY, r.getWidth(), r.getHeight());
+		g.clip();
+		g.clearRect(r.minX, r.minY, r.getWidth(), r.getHeight());
+		int executed;
+		if (this.isTiled()) {
+			executed = this.tileCache.draw(g, this.viewport, r);
+		} else {
+			this.viewport.transform(g);
+			executed = this.model.executeCommitted(g, this.viewport.toDocument(r), this.viewport.getScale());
+		}
+		g.restore();
+		PaintMetrics.get().repaintFinished(start, executed);
+	}
+	
+	/**
+	 * Clear region of the live layer, or all of it if region is null,
+	 * and draw the active command, if any, and the selection outlines.
+	 * @param region the part of the document that changed on the live layer
+	 */
+	void repaintLive(BoundingBox region) {
+		long start = PaintMetrics.get().start();
+		GraphicsContext g = this.liveCanvas.getGraphicsContext2D();
+		BoundingBox r = region == null ? this.canvasBounds() : this.viewport.toCanvas(region);
+		g.clearRect(r.minX, r.minY, r.getWidth(), r.getHeight());
+		PaintCommand active = this.model.getActiveCommand();
+		if (active != null) {
+			g.save();
+			this.viewport.transform(g);
+			active.execute(g);
+			g.restore();
+		}
+		int executed = active != null ? 1 : 0;
+		g.setStroke(SELECTION_COLOR);
+		for (PaintCommand c : this.model.getSelection()) {
+			BoundingBox b = this.viewport.toCanvas(c.getBounds()); // outlined just inside, so clearing the bounds clears it
+			g.strokeRect(b.minX + 0.5, b.minY + 0.5, b.getWidth() - 1, b.getHeight() - 1);
+		}
+		PaintMetrics.get().repaintFinished(start, executed);
+	}
+	
+	/**
+	 * @return the pixels of the canvases
+	 */
+	private BoundingBox canvasBounds() {
+		return new BoundingBox(0, 0, (int) Math.ceil(this.canvas.getWidth()), (int) Math.ceil(this.canvas.getHeight()));
+	}
+	
+	/**
+	 * Zoom in by levels, or out if it is negative, about the centre of the panel.
+	 */
+	void zoom(int levels) {
+		this.viewport.zoom(levels);
+		this.scheduler.repaint(null);
+	}
+	
+	/**
+	 * Back to the document at a scale of 1, from the origin.
+	 */
+	void resetZoom() {
+		this.viewport.reset();
+		this.scheduler.repaint(null);
+	}
+	
+	/**
+	 * Draw the committed layer from a TileCache at every zoom, or only when
+	 * zoomed out, and otherwise from the commands.
+	 */
+	void setTileCacheEnabled(boolean enabled) {
+		this.tiled = enabled;
+		if (!enabled) {
+			this.tileCache.clear(); // free the tiles, which are drawn again if needed zoomed out
+		}
+		this.scheduler.repaint(null);
+	}
+
+	/**
+	 * @return whether the committed layer is drawn from the TileCache now
+	 */
+	private boolean isTiled() {
+		return this.tiled || this.viewport.getScale() < 1;
+	}
+	
+	/**
+	 * Size the canvases to the panel, showing more or less of the document.
+	 */
+	@Override
+	protected void layoutChildren() {
+		double width = this.getWidth(), height = this.getHeight();
+		if (width != this.canvas.getWidth() || height != this.canvas.getHeight()) {
+			this.canvas.setWidth(width);
+			this.canvas.setHeight(height);
+			this.liveCanvas.setWidth(width);
+			this.liveCanvas.setHeight(height);
+			this.viewport.setSize(width, height);
+			this.scheduler.repaint(null);
+		}
+		super.layoutChildren();
+	}
+
+	/**
+	 * The RepaintScheduler finished the frame that began at start, from
+	 * PaintMetrics.start.
+	 */
+	void frameFinished(long start) {
+		PaintMetrics metrics = PaintMetrics.get();
+		metrics.frameFinished(start, this.model);
+		if (start != 0 && this.metricsOverlay.isVisible() && start - this.overlayUpdated > OVERLAY_INTERVAL) {
+			this.overlayUpdated = start;
+			this.metricsOverlay.setText(metrics.summary());
+		}
+	}
+
+	/**
+	 * Show or hide the PaintMetrics overlay, enabling the metrics while it shows.
+	 */
+	void setMetricsOverlayVisible(boolean visible) {
+		this.metricsOverlay.setVisible(visible);
+		PaintMetrics.get().setOverlayShown(visible);
+		if (visible) {
+			this.metricsOverlay.setText(PaintMetrics.get().summary());
+		}
 	}
 
 	@Override
 	public void update(Observable o, Object arg) {
-		this.repaint();
+		if (arg instanceof PaintChange) {
+			PaintChange change = (PaintChange) arg;
+			if (change.command == this.model.getActiveCommand() || change.command == null) {
+				// The active command or the selection changed, both on the live layer
+				this.scheduler.repaintLive(change.region);
+			} else {
+				// A finished or otherwise changed command belongs on the committed layer
+				this.tileCache.invalidate(change.region);
+				this.scheduler.repaintLive(null);
+				this.scheduler.repaint(change.region);
+			}
+		} else {
+			this.tileCache.clear();
+			this.scheduler.repaint(null);
+		}
 	}
 
+	/**
+	 * Middle button events pan; the rest go to the strategy.
+	 */
 	@Override
 	public void handle(MouseEvent event) {
+		if (event.getButton() == MouseButton.MIDDLE || event.isMiddleButtonDown()) {
+			if (event.getEventType() == MouseEvent.MOUSE_DRAGGED) {
+				this.viewport.panBy(event.getX() - this.panX, event.getY() - this.panY);
+				this.scheduler.repaint(null);
+			}
+			this.panX = event.getX();
+			this.panY = event.getY();
+			return;
+		}
 		this.strategy.handle(event);
 	}
 	public void setShapeManipulatorStrategy(ShapeManipulatorStrategy strategy) {
+		strategy.setViewport(this.viewport);
 		this.strategy = strategy;
 	}
 }
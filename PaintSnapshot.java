@@ -0,0 +1,353 @@
+package ca.utoronto.utm.paint;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * An unchangeable list of commands, the drawing as it was at one moment,
+ * which any thread may read while the user keeps drawing. See
+ * PaintModel.snapshot.
+ *
+ * The commands are kept in a B-tree of nodes up to WIDTH wide, each
+ * knowing how many commands are under each of its children, so a command
+ * can be found, put in or taken out anywhere by its index in time
+ * logarithmic in the size of the drawing. A Builder keeps such a tree in
+ * step with a changing list and takes snapshots of it. Taking one costs
+ * nothing: the nodes it shares are never changed again, and the Builder
+ * copies any node it needs to change that a snapshot may share, so
+ * successive snapshots of a large drawing share all but the few paths
+ * edited in between.
+ */
+class PaintSnapshot extends AbstractList<PaintCommand> implements RandomAccess {
+	private static final int WIDTH = 32; // most children or commands of a node
+	private static final int MIN_WIDTH = WIDTH / 4; // fewest, except in the root
+
+	static final PaintSnapshot EMPTY = new PaintSnapshot(new Node(null, true));
+
+	/**
+	 * A node of the tree: a leaf holding commands, or a branch holding nodes.
+	 * Only the Builder whose owner it is may change it.
+	 */
+	private static final class Node {
+		final Object owner; // of the Builder that may change it, or null if none may
+		final Object[] items = new Object[WIDTH]; // commands of a leaf, nodes of a branch
+		final int[] sizes; // commands under each node of a branch, or null for a leaf
+		int count; // items in use
+		int size; // commands under this
+
+		Node(Object owner, boolean leaf) {
+			this.owner = owner;
+			this.sizes = leaf ? null : new int[WIDTH];
+		}
+
+		boolean isLeaf() {
+			return this.sizes == null;
+		}
+
+		/**
+		 * @return a copy of this that owner may change
+		 */
+		Node copy(Object owner) {
+			Node copy = new Node(owner, this.isLeaf());
+			System.arraycopy(this.items, 0, copy.items, 0, this.count);
+			if (!this.isLeaf()) {
+				System.arraycopy(this.sizes, 0, copy.sizes, 0, this.count);
+			}
+			copy.count = this.count;
+			copy.size = this.size;
+			return copy;
+		}
+
+		/**
+		 * @return how many commands are under item i
+		 */
+		int sizeOf(int i) {
+			return this.isLeaf() ? 1 : this.sizes[i];
+		}
+
+		/**
+		 * Put item, with size commands under it, in at i.
+		 */
+		void insertItem(int i, Object item, int size) {
+			System.arraycopy(this.items, i, this.items, i + 1, this.count - i);
+			this.items[i] = item;
+			if (!this.isLeaf()) {
+				System.arraycopy(this.sizes, i, this.sizes, i + 1, this.count - i);
+				this.sizes[i] = size;
+			}
+			this.count++;
+			this.size += size;
+		}
+
+		/**
+		 * Take out the item at i.
+		 */
+		void removeItem(int i) {
+			this.size -= this.sizeOf(i);
+			System.arraycopy(this.items, i + 1, this.items, i, this.count - i - 1);
+			if (!this.isLeaf()) {
+				System.arraycopy(this.sizes, i + 1, this.sizes, i, this.count - i - 1);
+			}
+			this.count--;
+			this.items[this.count] = null;
+		}
+
+		/**
+		 * Move the items of this from i on to the end of to, which is the same kind of node.
+		 */
+		void moveTo(int i, Node to) {
+			int n = this.count - i;
+			System.arraycopy(this.items, i, to.items, to.count, n);
+			int moved = n;
+			if (!this.isLeaf()) {
+				System.arraycopy(this.sizes, i, to.sizes, to.count, n);
+				moved = 0;
+				for (int j = i; j < this.count; j++) {
+					moved += this.sizes[j];
+				}
+			}
+			to.count += n;
+			to.size += moved;
+			Arrays.fill(this.items, i, this.count, null);
+			this.count = i;
+			this.size -= moved;
+		}
+	}
+
+	private final int size;
+	private final Node root; // never changed again
+
+	private PaintSnapshot(Node root) {
+		this.size = root.size;
+		this.root = root;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public PaintCommand get(int i) {
+		if (i < 0 || i >= this.size) {
+			throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + this.size);
+		}
+		Node node = this.root;
+		while (!node.isLeaf()) {
+			int child = 0;
+			while (i >= node.sizes[child]) {
+				i -= node.sizes[child++];
+			}
+			node = (Node) node.items[child];
+		}
+		return (PaintCommand) node.items[i];
+	}
+
+	/**
+	 * Keeps a tree in step with a list of commands, as it has commands put
+	 * in, taken out and replaced, and takes snapshots of it. It is used by
+	 * one thread at a time.
+	 */
+	static class Builder {
+		private Object owner = new Object(); // of the nodes this may change
+		private Node root = EMPTY.root;
+		private PaintSnapshot last = EMPTY; // the last snapshot, or null if this changed since
+
+		int size() {
+			return this.root.size;
+		}
+
+		/**
+		 * @return the commands as they are now, never changing
+		 */
+		PaintSnapshot snapshot() {
+			if (this.last == null) {
+				this.last = new PaintSnapshot(this.root);
+				this.owner = new Object(); // the snapshot shares every node there is now
+			}
+			return this.last;
+		}
+
+		/**
+		 * Put command in at i, moving the commands from i on up one.
+		 */
+		void add(int i, PaintCommand command) {
+			if (i < 0 || i > this.size()) {
+				throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + this.size());
+			}
+			this.root = this.editable(this.root);
+			Node split = this.add(this.root, i, command);
+			if (split != null) {
+				Node root = new Node(this.owner, false);
+				root.insertItem(0, this.root, this.root.size);
+				root.insertItem(1, split, split.size);
+				this.root = root;
+			}
+			this.last = null;
+		}
+
+		void add(PaintCommand command) {
+			this.add(this.size(), command);
+		}
+
+		/**
+		 * Take out the command at i, moving the commands after it down one.
+		 * @return the command taken out
+		 */
+		PaintCommand remove(int i) {
+			this.check(i);
+			this.root = this.editable(this.root);
+			PaintCommand removed = this.remove(this.root, i);
+			if (!this.root.isLeaf() && this.root.count == 1) {
+				this.root = (Node) this.root.items[0]; // one level fewer
+			}
+			this.last = null;
+			return removed;
+		}
+
+		/**
+		 * Put command in place of the command at i.
+		 * @return the command it replaced
+		 */
+		PaintCommand set(int i, PaintCommand command) {
+			this.check(i);
+			this.root = this.editable(this.root);
+			Node node = this.root;
+			while (!node.isLeaf()) {
+				int child = 0;
+				while (i >= node.sizes[child]) {
+					i -= node.sizes[child++];
+				}
+				node = this.editableChild(node, child);
+			}
+			PaintCommand replaced = (PaintCommand) node.items[i];
+			node.items[i] = command;
+			this.last = null;
+			return replaced;
+		}
+
+		private void check(int i) {
+			if (i < 0 || i >= this.size()) {
+				throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + this.size());
+			}
+		}
+
+		/**
+		 * @return node, or a copy of it this may change if a snapshot may share it
+		 */
+		private Node editable(Node node) {
+			return node.owner == this.owner ? node : node.copy(this.owner);
+		}
+
+		/**
+		 * Make the child of node at i one this may change, as node is.
+		 * @return the child
+		 */
+		private Node editableChild(Node node, int i) {
+			Node child = this.editable((Node) node.items[i]);
+			node.items[i] = child;
+			return child;
+		}
+
+		/**
+		 * Put command in at i under node, which this may change.
+		 * @return a new node to go just after node if node had to be split, or null
+		 */
+		private Node add(Node node, int i, PaintCommand command) {
+			Object item = command;
+			int itemSize = 1;
+			int at = i;
+			if (!node.isLeaf()) {
+				int child = 0;
+				while (child < node.count - 1 && i >= node.sizes[child]) {
+					i -= node.sizes[child++];
+				}
+				Node childNode = this.editableChild(node, child);
+				Node split = this.add(childNode, i, command);
+				node.sizes[child] = childNode.size;
+				node.size++;
+				if (split == null) {
+					return null;
+				}
+				node.size -= split.size; // counted again as it goes in
+				item = split;
+				itemSize = split.size;
+				at = child + 1;
+			}
+			if (node.count < WIDTH) {
+				node.insertItem(at, item, itemSize);
+				return null;
+			}
+			// Full: split in half, or, adding at the end as most adds do, leave this full
+			Node right = new Node(this.owner, node.isLeaf());
+			if (at == WIDTH) {
+				right.insertItem(0, item, itemSize);
+				return right;
+			}
+			node.moveTo(WIDTH / 2, right);
+			if (at <= WIDTH / 2) {
+				node.insertItem(at, item, itemSize);
+			} else {
+				right.insertItem(at - WIDTH / 2, item, itemSize);
+			}
+			return right;
+		}
+
+		/**
+		 * Take out the command at i under node, which this may change.
+		 * @return the command taken out
+		 */
+		private PaintCommand remove(Node node, int i) {
+			if (node.isLeaf()) {
+				PaintCommand removed = (PaintCommand) node.items[i];
+				node.removeItem(i);
+				return removed;
+			}
+			int child = 0;
+			while (i >= node.sizes[child]) {
+				i -= node.sizes[child++];
+			}
+			Node childNode = this.editableChild(node, child);
+			PaintCommand removed = this.remove(childNode, i);
+			node.sizes[child]--;
+			node.size--;
+			if (childNode.count < MIN_WIDTH && node.count > 1) {
+				this.rebalance(node, child == 0 ? 0 : child - 1);
+			}
+			return removed;
+		}
+
+		/**
+		 * Merge the children of node at left and left + 1, or share their
+		 * items evenly if they do not fit in one.
+		 */
+		private void rebalance(Node node, int left) {
+			Node leftNode = this.editableChild(node, left);
+			Node rightNode = this.editableChild(node, left + 1);
+			if (leftNode.count + rightNode.count <= WIDTH) {
+				rightNode.moveTo(0, leftNode);
+				node.sizes[left] = leftNode.size;
+				node.sizes[left + 1] = 0; // its commands moved left
+				node.removeItem(left + 1);
+				return;
+			}
+			int half = (leftNode.count + rightNode.count) / 2;
+			if (leftNode.count > half) {
+				// Move the end of the left to the start of the right
+				Node moved = new Node(this.owner, leftNode.isLeaf());
+				leftNode.moveTo(half, moved);
+				rightNode.moveTo(0, moved);
+				moved.moveTo(0, rightNode);
+			} else {
+				// Move the start of the right to the end of the left
+				Node rest = new Node(this.owner, rightNode.isLeaf());
+				rightNode.moveTo(half - leftNode.count, rest);
+				rightNode.moveTo(0, leftNode);
+				rest.moveTo(0, rightNode);
+			}
+			node.sizes[left] = leftNode.size;
+			node.sizes[left + 1] = rightNode.size;
+		}
+	}
+}
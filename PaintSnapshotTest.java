@@ -0,0 +1,222 @@
+package ca.utoronto.utm.paint;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class PaintSnapshotTest {
+
+	private static final int[] SIZES = { 0, 1, 31, 32, 33, 1024, 32768 + 33 }; // around where nodes fill and split
+	private static final int STEPS = 20000;
+
+	private PaintCommand command(int i) {
+		return new CircleCommand(new Point(i, i), 1);
+	}
+
+	/**
+	 * Check snapshot holds exactly the commands of expected, by get and by iterating.
+	 */
+	private void assertSameCommands(String message, List<PaintCommand> expected, PaintSnapshot snapshot) {
+		assertEquals(message + ": size", expected.size(), snapshot.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertSame(message + ": command " + i, expected.get(i), snapshot.get(i));
+		}
+		int i = 0;
+		for (PaintCommand command : snapshot) {
+			assertSame(message + ": iterated command " + i, expected.get(i++), command);
+		}
+	}
+
+	@Test
+	public void appendTest() {
+		for (int size : SIZES) {
+			PaintSnapshot.Builder builder = new PaintSnapshot.Builder();
+			ArrayList<PaintCommand> expected = new ArrayList<PaintCommand>();
+			for (int i = 0; i < size; i++) {
+				PaintCommand command = this.command(i);
+				builder.add(command);
+				expected.add(command);
+			}
+			this.assertSameCommands("Appended " + size, expected, builder.snapshot());
+		}
+	}
+
+	@Test
+	public void outOfBoundsTest() {
+		PaintSnapshot.Builder builder = new PaintSnapshot.Builder();
+		builder.add(this.command(0));
+		PaintSnapshot snapshot = builder.snapshot();
+		for (int i : new int[] { -1, 1 }) {
+			try {
+				snapshot.get(i);
+				fail("Got command " + i + " of 1");
+			} catch (IndexOutOfBoundsException e) {
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * Put commands in, take them out and replace them anywhere, checking
+	 * each snapshot against an ArrayList when taken and at the end.
+	 */
+	@Test
+	public void randomEditsTest() {
+		for (int size : SIZES) {
+			Random random = new Random(size);
+			PaintSnapshot.Builder builder = new PaintSnapshot.Builder();
+			ArrayList<PaintCommand> expected = new ArrayList<PaintCommand>();
+			for (int i = 0; i < size; i++) {
+				PaintCommand command = this.command(i);
+				builder.add(command);
+				expected.add(command);
+			}
+			ArrayList<PaintSnapshot> snapshots = new ArrayList<PaintSnapshot>();
+			ArrayList<List<PaintCommand>> copies = new ArrayList<List<PaintCommand>>();
+			for (int step = 0; step < STEPS; step++) {
+				int action = random.nextInt(10);
+				if (action < 4 || expected.isEmpty()) {
+					// Mostly near the end, as drawing and undo do
+					int i = random.nextBoolean() ? expected.size() : random.nextInt(expected.size() + 1);
+					PaintCommand command = this.command(step);
+					builder.add(i, command);
+					expected.add(i, command);
+				} else if (action < 8) {
+					int i = random.nextBoolean() ? expected.size() - 1 : random.nextInt(expected.size());
+					assertSame("Removed at step " + step, expected.remove(i), builder.remove(i));
+				} else {
+					int i = random.nextInt(expected.size());
+					PaintCommand command = this.command(step);
+					assertSame("Replaced at step " + step, expected.set(i, command), builder.set(i, command));
+				}
+				assertEquals("Size at step " + step, expected.size(), builder.size());
+				if (random.nextInt(STEPS / 20) == 0) {
+					PaintSnapshot snapshot = builder.snapshot();
+					this.assertSameCommands("Snapshot at step " + step + " from " + size, expected, snapshot);
+					snapshots.add(snapshot);
+					copies.add(new ArrayList<PaintCommand>(expected));
+				}
+			}
+			this.assertSameCommands("Snapshot at end from " + size, expected, builder.snapshot());
+			for (int i = 0; i < snapshots.size(); i++) {
+				this.assertSameCommands("Snapshot " + i + " later from " + size, copies.get(i), snapshots.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Draw, resize, delete, undo and redo at random, checking each snapshot
+	 * draws as the model did when it was taken, and still does at the end,
+	 * and that the model keeps count of the bytes its commands take.
+	 */
+	@Test
+	public void modelSnapshotsTest() {
+		PaintModel paintModel = new PaintModel();
+		Random random = new Random(25);
+		ArrayList<PaintSnapshot> snapshots = new ArrayList<PaintSnapshot>();
+		ArrayList<String> drawn = new ArrayList<String>();
+		CircleCommand circle = null; // being drawn, if any
+		for (int step = 0; step < 2000; step++) {
+			ArrayList<PaintCommand> commands = paintModel.getCommands();
+			int action = random.nextInt(10);
+			if (action < 2 && circle == null) {
+				circle = new CircleCommand(new Point(random.nextInt(500), random.nextInt(500)), 1);
+				paintModel.startCommand(circle);
+			} else if (action < 4 && circle != null) {
+				circle.setRadius(1 + random.nextInt(50));
+			} else if (action < 5 && circle != null) {
+				paintModel.finishCommand();
+			} else if (action < 6) {
+				SquiggleCommand squiggle = new SquiggleCommand();
+				paintModel.startCommand(squiggle);
+				for (int i = random.nextInt(30); i >= 0; i--) {
+					squiggle.add(random.nextInt(500), random.nextInt(500));
+				}
+				paintModel.finishCommand();
+			} else if (action == 6 && !commands.isEmpty()) {
+				paintModel.removeCommand(commands.get(random.nextInt(commands.size())));
+			} else if (action < 8 && paintModel.canUndo()) {
+				paintModel.undo();
+			} else if (action < 10 && paintModel.canRedo()) {
+				paintModel.redo();
+			}
+			if (paintModel.getActiveCommand() != circle) {
+				circle = null; // finished, or taken out, so it no longer changes
+			}
+			long bytes = 0;
+			for (PaintCommand command : commands) {
+				bytes += UndoManager.sizeOf(command);
+			}
+			assertEquals("Command bytes at step " + step, bytes, paintModel.getCommandBytes());
+			if (random.nextInt(5) == 0) {
+				PaintSnapshot snapshot = paintModel.snapshot();
+				assertEquals("Snapshot at step " + step, saveAsText(commands), saveAsText(snapshot));
+				snapshots.add(snapshot);
+				drawn.add(saveAsText(snapshot));
+			}
+		}
+		for (int i = 0; i < snapshots.size(); i++) {
+			assertEquals("Snapshot " + i + " at the end", drawn.get(i), saveAsText(snapshots.get(i)));
+		}
+	}
+
+	/**
+	 * A command copied into a snapshot while it was drawn is shared by the
+	 * snapshots taken once it is finished.
+	 */
+	@Test
+	public void finishedSharedTest() {
+		PaintModel paintModel = new PaintModel();
+		CircleCommand circle = new CircleCommand(new Point(10, 10), 1);
+		paintModel.startCommand(circle);
+		assertNotSame(circle, paintModel.snapshot().get(0));
+		circle.setRadius(5);
+		paintModel.finishCommand();
+		assertSame(circle, paintModel.snapshot().get(0));
+		circle.setRadius(7); // as moved after it was finished
+		PaintSnapshot snapshot = paintModel.snapshot();
+		assertNotSame(circle, snapshot.get(0));
+		assertEquals(circle.saveIntoFile(), snapshot.get(0).saveIntoFile());
+		assertSame(circle, paintModel.snapshot().get(0));
+	}
+
+	/**
+	 * Commands that change anywhere in the drawing, while others are taken
+	 * out and put back under them, are copied into the next snapshot where
+	 * they are.
+	 */
+	@Test
+	public void changedAnywhereTest() {
+		PaintModel paintModel = new PaintModel();
+		Random random = new Random(26);
+		ArrayList<PaintCommand> commands = paintModel.getCommands();
+		for (int i = 0; i < 200; i++) {
+			paintModel.startCommand(new CircleCommand(new Point(random.nextInt(500), random.nextInt(500)), 1));
+			paintModel.finishCommand();
+		}
+		for (int step = 0; step < 1000; step++) {
+			int action = random.nextInt(4);
+			if (action == 0) {
+				paintModel.removeCommand(commands.get(random.nextInt(commands.size())));
+			} else if (action == 1 && paintModel.canUndo()) {
+				paintModel.undo();
+			} else {
+				((CircleCommand) commands.get(random.nextInt(commands.size()))).setRadius(1 + random.nextInt(50));
+			}
+			if (random.nextInt(3) == 0) {
+				assertEquals("Snapshot at step " + step, saveAsText(commands), saveAsText(paintModel.snapshot()));
+			}
+		}
+	}
+
+	private static String saveAsText(List<PaintCommand> commands) {
+		StringBuilder s = new StringBuilder();
+		for (PaintCommand command : commands) {
+			s.append(command.saveIntoFile());
+		}
+		return s.toString();
+	}
+}
@@ -0,0 +1,90 @@
+package ca.utoronto.utm.paint;
+
+import java.util.Arrays;
+
+/**
+ * A growable sequence of points, packed into a single int array as
+ * x0, y0, x1, y1, ... rather than held as one Point object per point.
+ * Points are read back by index with getX and getY, so walking the
+ * sequence does not allocate. A point takes about 9 bytes, with the room
+ * left to grow, where a List of Points took over 30.
+ *
+ * A buffer can be shared by several squiggles, such as a squiggle and its
+ * pasted copies. Once shared it is never added to again; a squiggle that
+ * needs to add to a shared buffer first takes its own copy of it.
+ */
+class PointBuffer {
+	private int[] coordinates; // interleaved x and y of each point
+	private int size = 0; // number of points
+
+	private boolean shared = false; // whether more than one squiggle may hold this
+
+	PointBuffer() {
+		this.coordinates = new int[32];
+	}
+
+	/**
+	 * A new buffer holding the same points as other.
+	 */
+	PointBuffer(PointBuffer other) {
+		this.coordinates = Arrays.copyOf(other.coordinates, Math.max(32, 2 * other.size));
+		this.size = other.size;
+	}
+
+	/**
+	 * Mark this as held by another squiggle too, so none of them may add to it.
+	 * @return this
+	 */
+	PointBuffer share() {
+		this.shared = true;
+		return this;
+	}
+
+	/**
+	 * @return whether this may be held by more than one squiggle
+	 */
+	boolean isShared() {
+		return this.shared;
+	}
+
+	/**
+	 * Append the point (x, y), growing the array as needed.
+	 * @throws IllegalStateException if the buffer is shared, as the squiggles
+	 * sharing it would all change
+	 */
+	void add(int x, int y) {
+		if (this.shared) {
+			throw new IllegalStateException("Adding to a shared point buffer");
+		}
+		if (2 * this.size == this.coordinates.length) {
+			// Grow by half again, keeping the length even so it always holds whole points
+			this.coordinates = Arrays.copyOf(this.coordinates, this.coordinates.length + (this.coordinates.length >> 2 << 1));
+		}
+		this.coordinates[2 * this.size] = x;
+		this.coordinates[2 * this.size + 1] = y;
+		this.size++;
+	}
+
+	/**
+	 * @return the number of points
+	 */
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * @param i the index of a point, 0 <= i < size()
+	 * @return the x coordinate of point i
+	 */
+	int getX(int i) {
+		return this.coordinates[2 * i];
+	}
+
+	/**
+	 * @param i the index of a point, 0 <= i < size()
+	 * @return the y coordinate of point i
+	 */
+	int getY(int i) {
+		return this.coordinates[2 * i + 1];
+	}
+}
@@ -0,0 +1,79 @@
+package ca.utoronto.utm.paint;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class PointBufferTest {
+
+	private static final int POINTS = 5000; // enough to grow the buffer many times
+
+	@Test
+	public void addManyPointsTest() {
+		PointBuffer points = new PointBuffer();
+		for (int i = 0; i < POINTS; i++) {
+			points.add(i, -i);
+			assertEquals("Size after adding point " + i, i + 1, points.size());
+		}
+		for (int i = 0; i < POINTS; i++) {
+			assertEquals("x of point " + i, i, points.getX(i));
+			assertEquals("y of point " + i, -i, points.getY(i));
+		}
+	}
+
+	@Test
+	public void copyKeepsPointsTest() {
+		PointBuffer points = new PointBuffer();
+		for (int i = 0; i < POINTS; i++) {
+			points.add(i, 2 * i);
+		}
+		PointBuffer copy = new PointBuffer(points.share());
+		for (int i = POINTS; i < 2 * POINTS; i++) {
+			copy.add(i, 2 * i);
+		}
+		assertEquals("Shared buffer size", POINTS, points.size());
+		assertEquals("Copy size", 2 * POINTS, copy.size());
+		for (int i = 0; i < 2 * POINTS; i++) {
+			assertEquals("x of point " + i, i, copy.getX(i));
+			assertEquals("y of point " + i, 2 * i, copy.getY(i));
+		}
+	}
+
+	@Test
+	public void sharedRejectsAddTest() {
+		PointBuffer points = new PointBuffer();
+		points.add(1, 2);
+		points.share();
+		try {
+			points.add(3, 4);
+			fail("Added to a shared buffer");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals("Shared buffer size", 1, points.size());
+	}
+
+	@Test
+	public void squiggleCopyKeepsPointsTest() {
+		SquiggleCommand squiggle = new SquiggleCommand();
+		squiggle.add(1, 2);
+		SquiggleCommand copy = squiggle.copyMovedBy(10, 10);
+		squiggle.add(3, 4);
+		copy.add(5, 6);
+		assertEquals("Original point count", 2, squiggle.getPointCount());
+		assertEquals("Original last x", 3, squiggle.getX(1));
+		assertEquals("Copy point count", 2, copy.getPointCount());
+		assertEquals("Copy first x", 11, copy.getX(0));
+		assertEquals("Copy last x", 5, copy.getX(1));
+	}
+
+	@Test
+	public void squiggleAddManyPointsTest() {
+		SquiggleCommand squiggle = new SquiggleCommand();
+		for (int i = 0; i < POINTS; i++) {
+			squiggle.add(i % 500, i / 500);
+		}
+		assertEquals("Point count", POINTS, squiggle.getPointCount());
+		assertEquals("Last x", (POINTS - 1) % 500, squiggle.getX(POINTS - 1));
+		assertEquals("Last y", (POINTS - 1) / 500, squiggle.getY(POINTS - 1));
+	}
+}
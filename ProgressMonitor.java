@@ -0,0 +1,22 @@
+package ca.utoronto.utm.paint;
+
+/**
+ * Follows a long running load or save. The parsers and save visitors report
+ * the work they have done to it as they go, and stop by throwing a
+ * java.util.concurrent.CancellationException once it has been cancelled.
+ * A javafx.concurrent.Task already has isCancelled, so a Task can be its
+ * own ProgressMonitor.
+ */
+interface ProgressMonitor {
+	/**
+	 * Record that amount more units of work are done. May be called from
+	 * several threads at once.
+	 * @param amount bytes read, or commands written
+	 */
+	void worked(long amount);
+
+	/**
+	 * @return whether the work should stop
+	 */
+	boolean isCancelled();
+}
@@ -0,0 +1,39 @@
+package ca.utoronto.utm.paint;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A PaintFileScanner over a Reader. Characters are pulled from the Reader
+ * in blocks, so there is no per-character call into the Reader.
+ */
+class ReaderPaintFileScanner extends PaintFileScanner {
+	private Reader reader;
+	private char[] buffer = new char[8192];
+	private int position = 0; // next char to return from buffer
+	private int limit = 0; // number of valid chars in buffer
+	private long bufferStart = 0; // number of chars read before buffer
+
+	ReaderPaintFileScanner(Reader reader) {
+		this.reader = reader;
+	}
+
+	@Override
+	protected int read() throws IOException {
+		if (this.position == this.limit) {
+			this.bufferStart += this.limit;
+			this.limit = this.reader.read(this.buffer, 0, this.buffer.length);
+			this.position = 0;
+			if (this.limit <= 0) {
+				this.limit = 0;
+				return -1;
+			}
+		}
+		return this.buffer[this.position++];
+	}
+
+	@Override
+	protected long getPosition() {
+		return this.bufferStart + this.position;
+	}
+}
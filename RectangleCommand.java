@@ -16,9 +16,10 @@ public class RectangleCommand extends PaintCommand {
 	}
 
 	public void setP1(Point p1) {
+		BoundingBox oldBounds = this.getBounds();
 		this.p1 = p1;
 		this.setChanged();
-		this.notifyObservers();
+		this.notifyObservers(oldBounds.union(this.getBounds()));
 	}
 
 	public Point getP2() {
@@ -26,9 +27,10 @@ public class RectangleCommand extends PaintCommand {
 	}
 
 	public void setP2(Point p2) {
+		BoundingBox oldBounds = this.getBounds();
 		this.p2 = p2;
 		this.setChanged();
-		this.notifyObservers();
+		this.notifyObservers(oldBounds.union(this.getBounds()));
 	}
 
 	public Point getTopLeft(){
@@ -57,11 +59,14 @@ public class RectangleCommand extends PaintCommand {
 	}
 	
 	@Override
-	public String saveIntoFile() {
-		String s = "";
-		s += "\tp1:" + "(" + this.p1.x +  "," + this.p1.y + ")\n";
-		s += "\tp2:" + "(" + this.p2.x +  "," + this.p2.y + ")\n";
-		return "Rectangle\n" + super.saveIntoFile() + s + "End Rectangle\n";
+	public RectangleCommand copyMovedBy(int dx, int dy) {
+		return this.copyStyleInto(new RectangleCommand(new Point(this.p1.x + dx, this.p1.y + dy),
+				new Point(this.p2.x + dx, this.p2.y + dy)));
+	}
+	
+	@Override
+	public BoundingBox getBounds() {
+		return BoundingBox.around(p1.x, p1.y, p2.x, p2.y, STROKE_MARGIN);
 	}
 	
 	@Override
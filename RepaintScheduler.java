@@ -0,0 +1,81 @@
+package ca.utoronto.utm.paint;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Collects the repaints a PaintPanel is asked for and performs them
+ * together on the next JavaFX pulse. However many changes arrive between
+ * two pulses, the panel is repainted at most once, covering the union of
+ * the changed regions.
+ */
+class RepaintScheduler extends AnimationTimer {
+	private PaintPanel panel;
+	private boolean scheduled = false; // whether the timer is running
+
+	private boolean repaintAll = false; // rebuild both layers
+	private BoundingBox committedRegion = BoundingBox.EMPTY; // dirty part of the committed layer
+	private boolean liveAll = false; // clear the whole live layer
+	private BoundingBox liveRegion = BoundingBox.EMPTY; // dirty part of the live layer
+	private boolean live = false; // whether the live layer needs a repaint
+
+	RepaintScheduler(PaintPanel panel) {
+		this.panel = panel;
+	}
+
+	/**
+	 * Repaint region of the committed layer on the next pulse.
+	 * @param region the changed region, or null to rebuild everything
+	 */
+	void repaint(BoundingBox region) {
+		if (region == null) {
+			this.repaintAll = true;
+		} else {
+			this.committedRegion = this.committedRegion.union(region);
+		}
+		this.schedule();
+	}
+
+	/**
+	 * Repaint region of the live layer on the next pulse.
+	 * @param region the changed region, or null to clear the whole layer
+	 */
+	void repaintLive(BoundingBox region) {
+		this.live = true;
+		if (region == null) {
+			this.liveAll = true;
+		} else {
+			this.liveRegion = this.liveRegion.union(region);
+		}
+		this.schedule();
+	}
+
+	private void schedule() {
+		if (!this.scheduled) {
+			this.scheduled = true;
+			this.start();
+		}
+	}
+
+	@Override
+	public void handle(long now) {
+		long start = PaintMetrics.get().start();
+		this.stop();
+		this.scheduled = false;
+		if (this.repaintAll) {
+			this.panel.repaint();
+		} else {
+			if (!this.committedRegion.isEmpty()) {
+				this.panel.repaint(this.committedRegion);
+			}
+			if (this.live) {
+				this.panel.repaintLive(this.liveAll ? null : this.liveRegion);
+			}
+		}
+		this.repaintAll = false;
+		this.committedRegion = BoundingBox.EMPTY;
+		this.liveAll = false;
+		this.liveRegion = BoundingBox.EMPTY;
+		this.live = false;
+		this.panel.frameFinished(start);
+	}
+}
@@ -0,0 +1,88 @@
+package ca.utoronto.utm.paint;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import javafx.concurrent.Task;
+
+/**
+ * Saves a list of commands, usually a PaintModel.snapshot, on a background
+ * thread, so the user can keep drawing while a large drawing is written.
+ * Files named with BinaryPaintFormat.EXTENSION are saved in the binary
+ * format, and all others in the text format. The commands are written to
+ * a temporary file next to the target, which only replaces the target once
+ * it is complete, so a cancelled or failed save leaves the old file as it
+ * was. The temporary file takes the permissions of the file it replaces,
+ * where the file system has POSIX permissions, so saving over a file keeps
+ * who may read and write it. Progress is the number of commands written.
+ */
+class SaveTask extends Task<Void> implements ProgressMonitor {
+	private File file;
+	private List<PaintCommand> commands;
+	private long written = 0; // commands written so far
+
+	SaveTask(File file, List<PaintCommand> commands) {
+		this.file = file;
+		this.commands = commands;
+		this.updateMessage("Saving " + file.getName());
+	}
+
+	@Override
+	protected Void call() throws IOException {
+		long start = System.nanoTime();
+		File directory = this.file.getAbsoluteFile().getParentFile();
+		File temporary = File.createTempFile("paint", ".tmp", directory); // not the file name, which may be under the 3 characters a prefix needs
+		try {
+			if (this.file.getName().endsWith(BinaryPaintFormat.EXTENSION)) {
+				try (OutputStream out = new FileOutputStream(temporary)) {
+					BinarySaveVisitor saveVisitor = new BinarySaveVisitor(out, this.commands);
+					saveVisitor.setProgressMonitor(this);
+					saveVisitor.save();
+				}
+			} else {
+				try (Writer out = new FileWriter(temporary)) {
+					SaveVisitor saveVisitor = new SaveVisitor(out, this.commands);
+					saveVisitor.setProgressMonitor(this);
+					saveVisitor.save();
+				}
+			}
+			PaintMetrics.get().saved(temporary.length(), this.commands.size(), System.nanoTime() - start);
+			keepPermissions(temporary.toPath(), this.file.toPath());
+			Files.move(temporary.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temporary.delete(); // if it was not moved
+		}
+		return null;
+	}
+
+	/**
+	 * Give temporary the POSIX permissions of target, if target exists and
+	 * the file system has them. The temporary file is made with the default
+	 * permissions, which the move would otherwise leave on the saved file.
+	 */
+	private static void keepPermissions(Path temporary, Path target) throws IOException {
+		if (!Files.exists(target)) {
+			return;
+		}
+		try {
+			Files.setPosixFilePermissions(temporary, Files.getPosixFilePermissions(target));
+		} catch (UnsupportedOperationException e) {
+			// No POSIX permissions, as on Windows, where the file takes those of its directory
+		}
+	}
+
+	@Override
+	public void worked(long amount) {
+		this.written += amount;
+		this.updateProgress(this.written, this.commands.size());
+	}
+}
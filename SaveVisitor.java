@@ -1,11 +1,13 @@
 package ca.utoronto.utm.paint;
 
-import java.io.BufferedWriter;
-import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.ArrayList;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import javafx.scene.paint.Color;
 
 /**
  * @author Wafiqah Raisa
@@ -13,44 +15,112 @@ import java.util.ArrayList;
  * Visitor design pattern. Saving of the objects takes place in this class, and 
  * all the information about each of the commands is written into a text file
  * when saving.
- * SaveVisitor has-a PrintWriter, a BufferedWriter, a PaintModel and an ArrayList
- * holding PaintCommand objects. It responds to all the concrete command classes.
+ * SaveVisitor has-a Writer and a List holding the PaintCommand objects to
+ * save. It responds to all the concrete command classes.
+ *
+ * Each field is written straight into a character buffer, which is passed on
+ * to the Writer whenever it fills up, so no Strings are built along the way
+ * and saving takes time proportional to the size of the file.
  */
 public class SaveVisitor implements Visitor {
 	
-	private PrintWriter printWriter;
-	private BufferedWriter bufferedWriter;
-	private PaintModel paintModel;
-	private ArrayList<PaintCommand> commands;
+	private Writer writer;
+	private List<PaintCommand> commands;
+	private ProgressMonitor progressMonitor; // told how many commands have been written, if set
+	private char[] buffer = new char[8192];
+	private int position = 0; // number of chars in buffer
+	private char[] digits = new char[10]; // scratch space for writeInt
+	
+	private static final int PROGRESS_COMMANDS = 1024; // commands written between progress reports
 	
 	/**
-	 * the constructor for this class initializes its PrintWriter object to be 
-	 * the PrintWriter object passed in, and initializes its PaintModel object to
-	 * be the PaintModel object passed in.
+	 * the constructor for this class initializes its Writer to be the 
+	 * PrintWriter object passed in, and the commands it saves to be those of
+	 * the PaintModel object passed in.
 	 * @param printWriter, which is a PrintWriter object
 	 * @param paintModel, which is a PaintModel object
 	 * @throws FileNotFoundException 
 	 */
 	public SaveVisitor(PrintWriter printWriter, PaintModel paintModel) throws FileNotFoundException {
-		this.printWriter = printWriter;
-		this.bufferedWriter = new BufferedWriter(this.printWriter);
-		this.paintModel = paintModel;
+		this((Writer) printWriter, paintModel);
+	}
+	
+	/**
+	 * @param writer the Writer the save file is written to
+	 * @param paintModel the PaintModel to save
+	 */
+	public SaveVisitor(Writer writer, PaintModel paintModel) {
+		this(writer, paintModel.getCommands());
 	}
 	
 	/**
-	 * Loops through the ArrayList holding the PaintCommand objects and saves
+	 * @param writer the Writer the save file is written to
+	 * @param commands the commands to save, such as a PaintModel.snapshot
+	 */
+	public SaveVisitor(Writer writer, List<PaintCommand> commands) {
+		this.writer = writer;
+		this.commands = commands;
+	}
+	
+	/**
+	 * A SaveVisitor for writing single commands, by having them accept it,
+	 * without the file's header and footer. Call flush when done.
+	 * @param writer the Writer the commands are written to
+	 */
+	SaveVisitor(Writer writer) {
+		this(writer, (List<PaintCommand>) null);
+	}
+	
+	/**
+	 * Report each command written to progressMonitor, and stop the save
+	 * with a CancellationException once it is cancelled.
+	 * @param progressMonitor the monitor, or null for none
+	 */
+	void setProgressMonitor(ProgressMonitor progressMonitor) {
+		this.progressMonitor = progressMonitor;
+	}
+	
+	/**
+	 * Loops through the List holding the PaintCommand objects and saves
 	 * them by sending this Visitor to the according Concrete Command class and 
 	 * having that Concrete Command class accept this visitor.
 	 * @throws IOException
 	 */
 	public void save() throws IOException {
-		this.commands = this.paintModel.getCommands();
-		this.bufferedWriter.write("Paint Save File Version 1.0\n");
+		this.write("Paint Save File Version 1.0\n");
 		for (int i = 0; i < this.commands.size(); i++) { // 1st change
 			this.commands.get(i).accept(this);
+			if ((i + 1) % PROGRESS_COMMANDS == 0) {
+				this.reportProgress(PROGRESS_COMMANDS);
+			}
+		}
+		this.reportProgress(this.commands.size() % PROGRESS_COMMANDS);
+		this.write("End Paint Save File");
+		this.flush();
+		this.writer.close();
+	}
+	
+	/**
+	 * Tell progressMonitor, if any, that amount more commands are written.
+	 * @throws CancellationException if the save has been cancelled
+	 */
+	private void reportProgress(int amount) {
+		if (this.progressMonitor != null) {
+			if (this.progressMonitor.isCancelled()) {
+				throw new CancellationException();
+			}
+			this.progressMonitor.worked(amount);
 		}
-		this.bufferedWriter.write("End Paint Save File");
-		this.bufferedWriter.close();
+	}
+	
+	/**
+	 * Pass everything written so far on to the Writer.
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		this.writer.write(this.buffer, 0, this.position);
+		this.position = 0;
+		this.writer.flush();
 	}
 	
 	/**
@@ -59,7 +129,15 @@ public class SaveVisitor implements Visitor {
 	 */
 	@Override
 	public void visit(CircleCommand circleCommand) throws IOException {
-	    this.bufferedWriter.write(circleCommand.saveIntoFile());
+		this.write("Circle\n");
+		this.writeColorAndFill(circleCommand);
+		this.write("\tcenter:(");
+		this.writeInt(circleCommand.getCentre().x);
+		this.write(',');
+		this.writeInt(circleCommand.getCentre().y);
+		this.write(")\n\tradius:");
+		this.writeInt(circleCommand.getRadius());
+		this.write("\nEnd Circle\n");
 	}
 	
 	/**
@@ -68,7 +146,17 @@ public class SaveVisitor implements Visitor {
 	 */
 	@Override
 	public void visit(SquiggleCommand squiggleCommand) throws IOException {
-		this.bufferedWriter.write(squiggleCommand.saveIntoFile());
+		this.write("Squiggle\n");
+		this.writeColorAndFill(squiggleCommand);
+		this.write("\tpoints\n");
+		for (int i = 0; i < squiggleCommand.getPointCount(); i++) {
+			this.write("\t\tpoint:(");
+			this.writeInt(squiggleCommand.getX(i));
+			this.write(',');
+			this.writeInt(squiggleCommand.getY(i));
+			this.write(")\n");
+		}
+		this.write("\tend points\nEnd Squiggle\n");
 	}
 
 	/**
@@ -77,7 +165,72 @@ public class SaveVisitor implements Visitor {
 	 */
 	@Override
 	public void visit(RectangleCommand rectangleCommand) throws IOException {
-		this.bufferedWriter.write(rectangleCommand.saveIntoFile());
+		this.write("Rectangle\n");
+		this.writeColorAndFill(rectangleCommand);
+		this.write("\tp1:(");
+		this.writeInt(rectangleCommand.getP1().x);
+		this.write(',');
+		this.writeInt(rectangleCommand.getP1().y);
+		this.write(")\n\tp2:(");
+		this.writeInt(rectangleCommand.getP2().x);
+		this.write(',');
+		this.writeInt(rectangleCommand.getP2().y);
+		this.write(")\nEnd Rectangle\n");
 	}
 	
+	private void writeColorAndFill(PaintCommand command) throws IOException {
+		Color color = command.getColor();
+		this.write("\tcolor:");
+		this.writeInt((int)(color.getRed() * 255));
+		this.write(',');
+		this.writeInt((int)(color.getGreen() * 255));
+		this.write(',');
+		this.writeInt((int)(color.getBlue() * 255));
+		this.write(command.isFill() ? "\n\tfilled:true\n" : "\n\tfilled:false\n");
+	}
+	
+	/**
+	 * Write the decimal digits of n, without going through a String.
+	 */
+	private void writeInt(int n) throws IOException {
+		if (this.position > this.buffer.length - 11) { // room for "-2147483648"
+			this.writer.write(this.buffer, 0, this.position);
+			this.position = 0;
+		}
+		long value = n; // so that -Integer.MIN_VALUE fits
+		if (value < 0) {
+			this.buffer[this.position++] = '-';
+			value = -value;
+		}
+		int start = this.digits.length;
+		do {
+			this.digits[--start] = (char) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		int length = this.digits.length - start;
+		System.arraycopy(this.digits, start, this.buffer, this.position, length);
+		this.position += length;
+	}
+	
+	private void write(char c) throws IOException {
+		if (this.position == this.buffer.length) {
+			this.writer.write(this.buffer, 0, this.position);
+			this.position = 0;
+		}
+		this.buffer[this.position++] = c;
+	}
+	
+	private void write(String s) throws IOException {
+		int length = s.length();
+		if (this.position > this.buffer.length - length) {
+			this.writer.write(this.buffer, 0, this.position);
+			this.position = 0;
+			if (length > this.buffer.length) {
+				this.writer.write(s);
+				return;
+			}
+		}
+		s.getChars(0, length, this.buffer, this.position);
+		this.position += length;
+	}
 }
@@ -0,0 +1,42 @@
+package ca.utoronto.utm.paint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javafx.scene.input.MouseEvent;
+
+/**
+ * Selects commands for Cut and Copy. A click selects the topmost command
+ * under the mouse, or nothing, and a drag selects every command touching
+ * the dragged out box.
+ */
+class SelectManipulatorStrategy extends ShapeManipulatorStrategy {
+	private static final int CLICK_SLOP = 2; // pixels the mouse may move during a click
+	
+	private PaintModel paintModel;
+	private int startX, startY; // where the mouse was pressed
+	
+	public SelectManipulatorStrategy(PaintModel paintModel) {
+		super(paintModel);
+		this.paintModel = paintModel;
+	}
+	
+	@Override
+	public void mousePressed(MouseEvent e) {
+		this.startX = this.getX(e);
+		this.startY = this.getY(e);
+	}
+	
+	@Override
+	public void mouseReleased(MouseEvent e) {
+		int x = this.getX(e), y = this.getY(e);
+		List<PaintCommand> selection;
+		if (Math.abs(x - this.startX) <= CLICK_SLOP && Math.abs(y - this.startY) <= CLICK_SLOP) {
+			ArrayList<PaintCommand> under = this.paintModel.getCommandsAt(x, y);
+			selection = under.isEmpty() ? Collections.<PaintCommand>emptyList() : under.subList(under.size() - 1, under.size());
+		} else {
+			selection = this.paintModel.getCommandsIn(BoundingBox.around(this.startX, this.startY, x, y, 0));
+		}
+		this.paintModel.setSelection(selection);
+	}
+}
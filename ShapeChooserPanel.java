@@ -13,7 +13,7 @@ public class ShapeChooserPanel extends GridPane implements EventHandler<ActionEv
 
 		this.view = view;
 
-		String[] buttonLabels = { "Circle", "Rectangle", "Squiggle" };
+		String[] buttonLabels = { "Circle", "Rectangle", "Squiggle", "Select" };
 
 		int row = 0;
 		for (String label : buttonLabels) {
@@ -28,7 +28,7 @@ public class ShapeChooserPanel extends GridPane implements EventHandler<ActionEv
 	@Override
 	public void handle(ActionEvent event) {
 		String command = ((Button) event.getSource()).getText();
-		this.view.setPaintPanelShapeManipulatorStrategy(ShapeManipulatorFactory.create(command, view.getPaintModel()));
-		System.out.println(command);
+		this.view.setPaintPanelShapeManipulatorStrategy(ShapeManipulatorFactory.create(command, view.getPaintModel(),
+				view::getInputSimplifier));
 	}
 }
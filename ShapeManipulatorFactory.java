@@ -1,14 +1,21 @@
 package ca.utoronto.utm.paint;
 
+import java.util.function.Supplier;
+
 public class ShapeManipulatorFactory {
-	public static ShapeManipulatorStrategy create(String strategyName, PaintModel paintModel){
+	/**
+	 * @param input gives the simplifier applied to squiggles as they are drawn
+	 */
+	public static ShapeManipulatorStrategy create(String strategyName, PaintModel paintModel, Supplier<SquiggleSimplifier> input){
 		ShapeManipulatorStrategy strategy=null;
 		if(strategyName=="Circle"){
 			strategy=new CircleManipulatorStrategy(paintModel);
 		} else if(strategyName=="Squiggle"){
-			strategy=new SquiggleManipulatorStrategy(paintModel);
+			strategy=new SquiggleManipulatorStrategy(paintModel, input);
 		} else if(strategyName=="Rectangle"){
 			strategy=new RectangleManipulatorStrategy(paintModel);
+		} else if(strategyName=="Select"){
+			strategy=new SelectManipulatorStrategy(paintModel);
 		}
 		return strategy;
 	}
@@ -5,13 +5,42 @@ import javafx.scene.input.MouseEvent;
 
 public class ShapeManipulatorStrategy implements  EventHandler<MouseEvent> {
 	private PaintModel paintModel;
+	private Viewport viewport = new Viewport(); // maps mouse positions into the document
 	
 	ShapeManipulatorStrategy(PaintModel paintModel){
 		this.paintModel=paintModel;
 	}
 	
+	void setViewport(Viewport viewport){
+		this.viewport=viewport;
+	}
+	
+	/**
+	 * @return the document x coordinate of the pixel e is over
+	 */
+	int getX(MouseEvent e){
+		return (int)Math.floor(this.viewport.toDocumentX(e.getX()));
+	}
+	
+	/**
+	 * @return the document y coordinate of the pixel e is over
+	 */
+	int getY(MouseEvent e){
+		return (int)Math.floor(this.viewport.toDocumentY(e.getY()));
+	}
+	
+	/**
+	 * Add command to the model as the shape the user is now drawing.
+	 */
 	void addCommand(PaintCommand command){
-		this.paintModel.addCommand(command);
+		this.paintModel.startCommand(command);
+	}
+	
+	/**
+	 * The user has finished drawing the shape from addCommand.
+	 */
+	void finishCommand(){
+		this.paintModel.finishCommand();
 	}
 	
 	@Override
@@ -0,0 +1,302 @@
+package ca.utoronto.utm.paint;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Grids over the document that find the PaintCommands near a point or
+ * region without looking at every command. Commands are sorted by size into
+ * levels, each a grid of cells at least four times as wide as its largest
+ * command, and each command is listed in every cell of its level its bounds
+ * overlap, which is at most four. A query for the commands large enough to
+ * see, as when zoomed out, passes over the levels of smaller commands.
+ *
+ * Queries return commands in z-order, bottom first, so the results can be
+ * drawn as they are. Commands added on top get orders ORDER_GAP apart, so
+ * a command can later be inserted between two others by giving it an order
+ * in between, until the gap runs out and the orders are spread out again.
+ */
+class SpatialIndex {
+	private static final int CELL_SIZE = 64; // pixels along each side of a cell, at least
+	private static final int MIN_SIZE = 8; // level l holds commands at most MIN_SIZE << l pixels across
+	private static final int LEVELS = 28; // and the last level everything larger
+	private static final long ORDER_GAP = 1 << 16; // space left between the orders of commands added on top
+
+	/**
+	 * A command in the index, with the bounds and cells it was indexed under.
+	 */
+	private static class Entry {
+		PaintCommand command;
+		long order; // position in z-order
+		BoundingBox bounds;
+		Level level; // the level it is indexed on, if any
+		int minCellX, minCellY, maxCellX, maxCellY; // inclusive cell range on the level
+		int queryStamp; // the last query that returned this entry
+	}
+
+	/**
+	 * The grid of the commands of one range of sizes.
+	 */
+	private static class Level {
+		long maxSize; // across, of its commands, in pixels
+		long cellSize; // pixels along each side of a cell
+		HashMap<Long, ArrayList<Entry>> cells = new HashMap<Long, ArrayList<Entry>>();
+
+		Level(int l) {
+			this.maxSize = (long) MIN_SIZE << l;
+			this.cellSize = Math.max(CELL_SIZE, 4 * this.maxSize);
+		}
+
+		int cell(int coordinate) {
+			return (int) Math.floorDiv(coordinate, this.cellSize);
+		}
+	}
+
+	private Level[] levels = new Level[LEVELS]; // created as commands of their sizes arrive
+	private IdentityHashMap<PaintCommand, Entry> entries = new IdentityHashMap<PaintCommand, Entry>();
+	private long nextOrder = 0;
+	private int queryStamp = 0;
+	private BoundingBox bounds = BoundingBox.EMPTY; // covers every command placed since the last clear
+
+	/**
+	 * Add command on top of all the commands already in the index.
+	 */
+	void add(PaintCommand command) {
+		Entry entry = new Entry();
+		entry.command = command;
+		entry.order = this.nextOrder;
+		this.nextOrder += ORDER_GAP;
+		this.entries.put(command, entry);
+		this.place(entry, command.getBounds());
+	}
+
+	/**
+	 * Add command just above below and just under above in z-order.
+	 * @param below the command under command, or null if it goes at the bottom
+	 * @param above the command over command, or null if it goes on top
+	 */
+	void insert(PaintCommand command, PaintCommand below, PaintCommand above) {
+		if (above == null) {
+			this.add(command);
+			return;
+		}
+		long low = below == null ? this.entries.get(above).order - 2 * ORDER_GAP : this.entries.get(below).order;
+		long high = this.entries.get(above).order;
+		if (high - low < 2) {
+			this.renumber();
+			low = below == null ? this.entries.get(above).order - 2 * ORDER_GAP : this.entries.get(below).order;
+			high = this.entries.get(above).order;
+		}
+		Entry entry = new Entry();
+		entry.command = command;
+		entry.order = low + (high - low) / 2;
+		this.entries.put(command, entry);
+		this.place(entry, command.getBounds());
+	}
+
+	/**
+	 * Spread the orders of the entries ORDER_GAP apart again, keeping their z-order.
+	 */
+	private void renumber() {
+		ArrayList<Entry> all = new ArrayList<Entry>(this.entries.values());
+		all.sort(Comparator.comparingLong(entry -> entry.order));
+		this.nextOrder = 0;
+		for (Entry entry : all) {
+			entry.order = this.nextOrder;
+			this.nextOrder += ORDER_GAP;
+		}
+	}
+
+	/**
+	 * @return command's place in z-order: commands with a larger order are drawn over it
+	 */
+	long order(PaintCommand command) {
+		return this.entries.get(command).order;
+	}
+
+	/**
+	 * Take command out of the index.
+	 */
+	void remove(PaintCommand command) {
+		Entry entry = this.entries.remove(command);
+		if (entry != null) {
+			this.unplace(entry);
+		}
+	}
+
+	/**
+	 * Put replacement in the index in command's place in z-order.
+	 */
+	void replace(PaintCommand command, PaintCommand replacement) {
+		Entry entry = this.entries.remove(command);
+		entry.command = replacement;
+		this.entries.put(replacement, entry);
+		this.update(replacement);
+	}
+
+	/**
+	 * Re-index command after its bounds changed.
+	 */
+	void update(PaintCommand command) {
+		Entry entry = this.entries.get(command);
+		if (entry == null) {
+			return;
+		}
+		BoundingBox bounds = command.getBounds();
+		Level level = entry.level;
+		if (level != null && !bounds.isEmpty() && this.level(bounds) == level
+				&& level.cell(bounds.minX) == entry.minCellX && level.cell(bounds.minY) == entry.minCellY
+				&& level.cell(bounds.maxX - 1) == entry.maxCellX && level.cell(bounds.maxY - 1) == entry.maxCellY) {
+			entry.bounds = bounds; // still in the same cells
+			this.bounds = this.bounds.union(bounds);
+			return;
+		}
+		this.unplace(entry);
+		this.place(entry, bounds);
+	}
+
+	void clear() {
+		this.levels = new Level[LEVELS];
+		this.entries.clear();
+		this.nextOrder = 0;
+		this.bounds = BoundingBox.EMPTY;
+	}
+
+	/**
+	 * @return a box covering every command in the index. It does not shrink
+	 * when commands are removed or moved, so it may cover more.
+	 */
+	BoundingBox getBounds() {
+		return this.bounds;
+	}
+
+	/**
+	 * @return the commands whose bounds intersect region, bottom first
+	 */
+	ArrayList<PaintCommand> query(BoundingBox region) {
+		return this.query(region, 0);
+	}
+
+	/**
+	 * @return the commands whose bounds intersect region and are at least
+	 * minSize pixels across, bottom first
+	 */
+	ArrayList<PaintCommand> query(BoundingBox region, double minSize) {
+		ArrayList<Entry> found = new ArrayList<Entry>();
+		if (!region.isEmpty()) {
+			this.queryStamp++;
+			for (Level level : this.levels) {
+				if (level == null || level.maxSize < minSize) {
+					continue; // none of its commands could be found
+				}
+				if ((long) (level.cell(region.maxX - 1) - level.cell(region.minX) + 1)
+						* (level.cell(region.maxY - 1) - level.cell(region.minY) + 1) > level.cells.size()) {
+					// The region spans more cells than are in use, so visit those instead
+					for (ArrayList<Entry> list : level.cells.values()) {
+						this.collect(list, region, minSize, found);
+					}
+				} else {
+					for (int cy = level.cell(region.minY); cy <= level.cell(region.maxY - 1); cy++) {
+						for (int cx = level.cell(region.minX); cx <= level.cell(region.maxX - 1); cx++) {
+							ArrayList<Entry> list = level.cells.get(key(cx, cy));
+							if (list != null) {
+								this.collect(list, region, minSize, found);
+							}
+						}
+					}
+				}
+			}
+		}
+		return sorted(found);
+	}
+
+	/**
+	 * @return the commands whose bounds contain the pixel (x, y), bottom first
+	 */
+	ArrayList<PaintCommand> queryPoint(int x, int y) {
+		return this.query(new BoundingBox(x, y, x + 1, y + 1));
+	}
+
+	private void collect(ArrayList<Entry> list, BoundingBox region, double minSize, ArrayList<Entry> found) {
+		for (Entry entry : list) {
+			if (entry.queryStamp != this.queryStamp && entry.bounds.intersects(region) && size(entry.bounds) >= minSize) {
+				entry.queryStamp = this.queryStamp;
+				found.add(entry);
+			}
+		}
+	}
+
+	private static ArrayList<PaintCommand> sorted(ArrayList<Entry> found) {
+		found.sort(Comparator.comparingLong(entry -> entry.order));
+		ArrayList<PaintCommand> commands = new ArrayList<PaintCommand>(found.size());
+		for (Entry entry : found) {
+			commands.add(entry.command);
+		}
+		return commands;
+	}
+
+	private void place(Entry entry, BoundingBox bounds) {
+		entry.bounds = bounds;
+		entry.level = null;
+		if (bounds.isEmpty()) {
+			return; // draws nothing, so no query can find it
+		}
+		this.bounds = this.bounds.union(bounds);
+		Level level = this.level(bounds);
+		entry.level = level;
+		entry.minCellX = level.cell(bounds.minX);
+		entry.minCellY = level.cell(bounds.minY);
+		entry.maxCellX = level.cell(bounds.maxX - 1);
+		entry.maxCellY = level.cell(bounds.maxY - 1);
+		for (int cy = entry.minCellY; cy <= entry.maxCellY; cy++) {
+			for (int cx = entry.minCellX; cx <= entry.maxCellX; cx++) {
+				level.cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<Entry>()).add(entry);
+			}
+		}
+	}
+
+	private void unplace(Entry entry) {
+		Level level = entry.level;
+		if (level != null) {
+			for (int cy = entry.minCellY; cy <= entry.maxCellY; cy++) {
+				for (int cx = entry.minCellX; cx <= entry.maxCellX; cx++) {
+					Long key = key(cx, cy);
+					ArrayList<Entry> list = level.cells.get(key);
+					list.remove(entry);
+					if (list.isEmpty()) {
+						level.cells.remove(key);
+					}
+				}
+			}
+		}
+		entry.level = null;
+	}
+
+	/**
+	 * @return the level for commands with bounds, creating it if need be
+	 */
+	private Level level(BoundingBox bounds) {
+		long size = size(bounds);
+		int l = 0;
+		while (l < LEVELS - 1 && (long) MIN_SIZE << l < size) {
+			l++;
+		}
+		if (this.levels[l] == null) {
+			this.levels[l] = new Level(l);
+		}
+		return this.levels[l];
+	}
+
+	/**
+	 * @return how many pixels across bounds are, the larger of their width and height
+	 */
+	private static long size(BoundingBox bounds) {
+		return Math.max((long) bounds.maxX - bounds.minX, (long) bounds.maxY - bounds.minY);
+	}
+
+	private static Long key(int cellX, int cellY) {
+		return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+	}
+}
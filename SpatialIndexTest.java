@@ -0,0 +1,115 @@
+package ca.utoronto.utm.paint;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class SpatialIndexTest {
+
+	private static final int STEPS = 20000;
+
+	/**
+	 * @return a circle somewhere in a large document, of any size from a
+	 * pixel to most of the document across
+	 */
+	private CircleCommand randomCircle(Random random) {
+		int radius = random.nextInt(10) == 0 ? random.nextInt(50000) : random.nextInt(100);
+		return new CircleCommand(new Point(random.nextInt(200000) - 100000, random.nextInt(200000) - 100000), radius);
+	}
+
+	/**
+	 * @return a region of any size from a pixel to more than the document, which may be empty
+	 */
+	private BoundingBox randomRegion(Random random) {
+		int x = random.nextInt(300000) - 150000, y = random.nextInt(300000) - 150000;
+		int size = random.nextInt(3) == 0 ? random.nextInt(10) : random.nextInt(2) == 0 ? random.nextInt(5000) : random.nextInt(300000);
+		return new BoundingBox(x, y, x + size, y + random.nextInt(size + 1));
+	}
+
+	/**
+	 * @return the commands, in order, whose bounds intersect region and are at least minSize pixels across
+	 */
+	private ArrayList<PaintCommand> scan(ArrayList<PaintCommand> commands, BoundingBox region, double minSize) {
+		ArrayList<PaintCommand> found = new ArrayList<PaintCommand>();
+		for (PaintCommand command : commands) {
+			BoundingBox bounds = command.getBounds();
+			if (bounds.intersects(region) && Math.max(bounds.getWidth(), bounds.getHeight()) >= minSize) {
+				found.add(command);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * A circle as large as a file can describe is clamped, not wrapped
+	 * round into an empty box, so it is still found where it draws.
+	 */
+	@Test
+	public void hugeCircleTest() {
+		SpatialIndex index = new SpatialIndex();
+		CircleCommand circle = new CircleCommand(new Point(Integer.MAX_VALUE - 1, 0), Integer.MAX_VALUE);
+		index.add(circle);
+		BoundingBox bounds = circle.getBounds();
+		assertFalse("Bounds " + bounds + " empty", bounds.isEmpty());
+		assertTrue("Width " + bounds.getWidth() + " positive", bounds.getWidth() > 0);
+		ArrayList<PaintCommand> expected = new ArrayList<PaintCommand>();
+		expected.add(circle);
+		assertEquals("Found at the origin", expected, index.queryPoint(0, 0));
+		assertEquals("Found zoomed out", expected, index.query(new BoundingBox(-100, -100, 100, 100), 1000));
+	}
+
+	/**
+	 * Add, insert, move, replace and remove commands at random, checking
+	 * queries against a scan of the commands in z-order.
+	 */
+	@Test
+	public void randomEditsTest() {
+		Random random = new Random(22);
+		SpatialIndex index = new SpatialIndex();
+		ArrayList<PaintCommand> commands = new ArrayList<PaintCommand>(); // bottom first
+		for (int step = 0; step < STEPS; step++) {
+			int action = random.nextInt(10);
+			if (action < 3 || commands.isEmpty()) {
+				CircleCommand circle = this.randomCircle(random);
+				commands.add(circle);
+				index.add(circle);
+			} else if (action < 5) {
+				// Insert near the last insert now and then, to use up the gap between orders
+				int i = random.nextInt(4) == 0 ? Math.min(commands.size(), 1) : random.nextInt(commands.size() + 1);
+				CircleCommand circle = this.randomCircle(random);
+				PaintCommand below = i > 0 ? commands.get(i - 1) : null;
+				PaintCommand above = i < commands.size() ? commands.get(i) : null;
+				commands.add(i, circle);
+				index.insert(circle, below, above);
+			} else if (action < 7) {
+				CircleCommand circle = (CircleCommand) commands.get(random.nextInt(commands.size()));
+				if (random.nextBoolean()) {
+					circle.setCentre(new Point(circle.getCentre().x + random.nextInt(2001) - 1000,
+							circle.getCentre().y + random.nextInt(2001) - 1000));
+				} else {
+					circle.setRadius(random.nextInt(10) == 0 ? random.nextInt(50000) : random.nextInt(100));
+				}
+				index.update(circle);
+			} else if (action == 7) {
+				int i = random.nextInt(commands.size());
+				CircleCommand circle = this.randomCircle(random);
+				index.replace(commands.set(i, circle), circle);
+			} else {
+				index.remove(commands.remove(random.nextInt(commands.size())));
+			}
+
+			BoundingBox region = this.randomRegion(random);
+			double minSize = random.nextBoolean() ? 0 : random.nextInt(1000);
+			assertEquals("Step " + step + " query " + region + " at least " + minSize,
+					this.scan(commands, region, minSize), index.query(region, minSize));
+			PaintCommand command = commands.get(random.nextInt(commands.size()));
+			BoundingBox bounds = command.getBounds();
+			int x = bounds.minX + random.nextInt(bounds.getWidth()), y = bounds.minY + random.nextInt(bounds.getHeight());
+			ArrayList<PaintCommand> at = index.queryPoint(x, y);
+			assertEquals("Step " + step + " point " + x + "," + y, this.scan(commands, new BoundingBox(x, y, x + 1, y + 1), 0), at);
+			assertTrue("Step " + step + " bounds cover " + bounds, index.getBounds().contains(bounds));
+		}
+	}
+}
@@ -2,47 +2,152 @@ package ca.utoronto.utm.paint;
 import javafx.scene.canvas.GraphicsContext;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.List;
 
+/**
+ * A freehand line through a sequence of points. A copy shares the points of
+ * the squiggle it was copied from until either adds a point, and a moved
+ * copy only records how far it was moved, so copying a squiggle, however
+ * long, takes constant time and memory.
+ */
 public class SquiggleCommand extends PaintCommand {
-	private ArrayList<Point> points=new ArrayList<Point>();
-	
-	public void add(Point p){ 
-		this.points.add(p); 
+	/**
+	 * Where the polyline turns sharply, its miter join can reach up to
+	 * miterLimit/2 = 5 pixels past the point, plus the stroke margin.
+	 */
+	static final int JOIN_MARGIN = 6;
+
+	private PointBuffer points=new PointBuffer(); // possibly shared with copies, so never changed once shared
+	private int offsetX=0, offsetY=0; // added to each point in points
+	private int minX=Integer.MAX_VALUE, minY=Integer.MAX_VALUE, maxX=Integer.MIN_VALUE, maxY=Integer.MIN_VALUE; // of points, without the offset
+
+	public void add(Point p){
+		this.add(p.x, p.y);
+	}
+
+	public void add(int x, int y){
+		int n = this.points.size();
+		BoundingBox changed = n == 0 ? BoundingBox.around(x, y, x, y, JOIN_MARGIN)
+				: BoundingBox.around(this.getX(n-1), this.getY(n-1), x, y, JOIN_MARGIN);
+		if (this.points.isShared()) {
+			this.points = new PointBuffer(this.points);
+		}
+		x -= this.offsetX; y -= this.offsetY;
+		this.points.add(x, y);
+		this.minX = Math.min(this.minX, x); this.maxX = Math.max(this.maxX, x);
+		this.minY = Math.min(this.minY, y); this.maxY = Math.max(this.maxY, y);
+		this.setChanged();
+		this.notifyObservers(changed);
+	}
+
+	/**
+	 * Drop the points simplifier does not keep, notifying observers.
+	 */
+	void simplify(SquiggleSimplifier simplifier){
+		BoundingBox oldBounds = this.getBounds();
+		PointBuffer kept = simplifier.simplify(this.points);
+		if (kept.size() == this.points.size()) {
+			return;
+		}
+		this.points = kept;
+		this.minX = this.minY = Integer.MAX_VALUE;
+		this.maxX = this.maxY = Integer.MIN_VALUE;
+		for (int i = 0; i < kept.size(); i++) {
+			this.minX = Math.min(this.minX, kept.getX(i)); this.maxX = Math.max(this.maxX, kept.getX(i));
+			this.minY = Math.min(this.minY, kept.getY(i)); this.maxY = Math.max(this.maxY, kept.getY(i));
+		}
 		this.setChanged();
-		this.notifyObservers();
+		this.notifyObservers(oldBounds); // the points left are all inside it
+	}
+
+	/**
+	 * The points are stored packed, so use getPointCount, getX and getY
+	 * to walk them without allocating.
+	 * @return a read only view of the points, making a Point for each get
+	 */
+	public List<Point> getPoints(){
+		return new AbstractList<Point>() {
+			@Override
+			public Point get(int i) { return new Point(getX(i), getY(i)); }
+			@Override
+			public int size() { return points.size(); }
+		};
+	}
+
+	public int getPointCount(){ return this.points.size(); }
+	public int getX(int i){ return this.points.getX(i) + this.offsetX; }
+	public int getY(int i){ return this.points.getY(i) + this.offsetY; }
+
+	/**
+	 * Room for the coordinates of a squiggle as doubles, the form
+	 * GraphicsContext.strokePolyline takes. The GraphicsContext copies them
+	 * as it records the call, so a renderer can fill one for each squiggle
+	 * it draws in turn rather than each squiggle keeping its own.
+	 */
+	static final class Polyline {
+		double[] x = new double[64], y = new double[64];
 	}
-	public ArrayList<Point> getPoints(){ return this.points; }
-	
-	
+
+	/**
+	 * Draw the squiggle as a single polyline, through coordinates made for
+	 * this call. Renderers that draw many squiggles use strokePolyline.
+	 */
 	@Override
 	public void execute(GraphicsContext g) {
-		ArrayList<Point> points = this.getPoints();
 		g.setStroke(this.getColor());
-		for(int i=0;i<points.size()-1;i++){
-			Point p1 = points.get(i);
-			Point p2 = points.get(i+1);
-			g.strokeLine(p1.x, p1.y, p2.x, p2.y);
+		this.strokePolyline(g, new Polyline());
+	}
+
+	/**
+	 * Draw the squiggle with the stroke g already has, filling polyline
+	 * with its points, growing it as needed.
+	 */
+	void strokePolyline(GraphicsContext g, Polyline polyline) {
+		PointBuffer points = this.points;
+		int n = points.size();
+		if(n<2){
+			return;
 		}
-		
+		if (polyline.x.length < n) {
+			polyline.x = new double[Math.max(n, 2 * polyline.x.length)];
+			polyline.y = new double[polyline.x.length];
+		}
+		double[] x = polyline.x, y = polyline.y;
+		for (int i = 0; i < n; i++) {
+			x[i] = points.getX(i) + this.offsetX;
+			y[i] = points.getY(i) + this.offsetY;
+		}
+		g.strokePolyline(x, y, n);
 	}
-	
-	@Override 
-	public String saveIntoFile() {
-		String s = "";
-		s += "\tpoints\n";
-		for (Point point: this.points) {
-			s += "\t\tpoint:(" + point.x + "," + point.y + ")\n";
+
+	/**
+	 * The copy shares the points of this, which neither will change again.
+	 */
+	@Override
+	public SquiggleCommand copyMovedBy(int dx, int dy) {
+		SquiggleCommand copy = this.copyStyleInto(new SquiggleCommand());
+		copy.points = this.points.share();
+		copy.offsetX = this.offsetX + dx; copy.offsetY = this.offsetY + dy;
+		copy.minX = this.minX; copy.minY = this.minY;
+		copy.maxX = this.maxX; copy.maxY = this.maxY;
+		return copy;
+	}
+
+	@Override
+	public BoundingBox getBounds() {
+		if (this.points.size() == 0) {
+			return BoundingBox.EMPTY;
 		}
-		s += "\tend points\n";
-		return "Squiggle\n" + super.saveIntoFile() + s + "End Squiggle\n";
+		return BoundingBox.around(this.minX + this.offsetX, this.minY + this.offsetY,
+				this.maxX + this.offsetX, this.maxY + this.offsetY, JOIN_MARGIN);
 	}
-	
-	@Override 
+
+	@Override
 	public String toString() {
 		String s = "";
-		for (Point point: this.points) {
-			s += "point:(" + point.x + "," + point.y;
+		for (int i = 0; i < this.points.size(); i++) {
+			s += "point:(" + this.getX(i) + "," + this.getY(i);
 		}
 		return super.toString() + s;
 	}
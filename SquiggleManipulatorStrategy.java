@@ -1,20 +1,58 @@
 package ca.utoronto.utm.paint;
+import java.util.function.Supplier;
+
 import javafx.scene.input.MouseEvent;
 
+/**
+ * Draws a squiggle through the points the mouse is dragged to, leaving out
+ * those the input SquiggleSimplifier does not accept, and simplifying the
+ * squiggle once the mouse is released.
+ */
 class SquiggleManipulatorStrategy extends ShapeManipulatorStrategy {
-	SquiggleManipulatorStrategy(PaintModel paintModel) {
+	/**
+	 * @param input gives the input simplifier, as the user has chosen it when each squiggle starts
+	 */
+	SquiggleManipulatorStrategy(PaintModel paintModel, Supplier<SquiggleSimplifier> input) {
 		super(paintModel);
+		this.input = input;
 	}
 
+	private Supplier<SquiggleSimplifier> input;
 	private SquiggleCommand squiggleCommand;
+	private SquiggleSimplifier simplifier; // for the squiggle being drawn
+	private int lastX, lastY; // the last point added
+	private boolean skipped; // whether the mouse was dragged since the last point added
+	private int skippedX, skippedY; // where the mouse was dragged to
+
 	@Override
 	public void mouseDragged(MouseEvent e) {
-		this.squiggleCommand.add(new Point((int)e.getX(), (int)e.getY()));
+		int x = this.getX(e), y = this.getY(e);
+		if (this.squiggleCommand.getPointCount() == 0 || this.simplifier.accept(this.lastX, this.lastY, x, y)) {
+			this.squiggleCommand.add(x, y);
+			this.lastX = x; this.lastY = y;
+			this.skipped = false;
+		} else {
+			this.skipped = true;
+			this.skippedX = x; this.skippedY = y;
+		}
 	}
 
 	@Override
 	public void mousePressed(MouseEvent e) {
 			this.squiggleCommand = new SquiggleCommand();
+			this.simplifier = this.input.get();
+			this.skipped = false;
 			this.addCommand(squiggleCommand);
 	}
+
+	@Override
+	public void mouseReleased(MouseEvent e) {
+		if (this.skipped && (this.skippedX != this.lastX || this.skippedY != this.lastY)) {
+			this.squiggleCommand.add(this.skippedX, this.skippedY); // end where the mouse did
+		}
+		if (this.simplifier.getTolerance() > 0) {
+			this.squiggleCommand.simplify(this.simplifier);
+		}
+		this.finishCommand();
+	}
 }
@@ -0,0 +1,210 @@
+package ca.utoronto.utm.paint;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Thins out the points of squiggles, which get a point for every mouse drag
+ * event, most of them duplicates or a pixel from the one before. There are
+ * three stages:
+ *
+ * duplicates   a point equal to the last point kept is dropped
+ * distance     a point closer than minDistance to the last point kept is dropped
+ * tolerance    Ramer-Douglas-Peucker: a point within tolerance of the line
+ *              through the points kept either side of it is dropped, if
+ *              tolerance is more than 0
+ *
+ * The first and last points are always kept. Every dropped point is within
+ * getMaxError of the simplified squiggle, so that is the most any part of
+ * the drawing moves.
+ *
+ * The first two stages run as the user draws, through accept, and all three
+ * once the squiggle is finished, or over a whole drawing as an offline pass.
+ */
+class SquiggleSimplifier {
+	static final double DEFAULT_MIN_DISTANCE = 2;
+	static final double DEFAULT_TOLERANCE = 1;
+
+	private double minDistance; // in pixels
+	private double tolerance; // in pixels, or 0 to skip the last stage
+
+	SquiggleSimplifier(double minDistance, double tolerance) {
+		this.minDistance = minDistance;
+		this.tolerance = tolerance;
+	}
+
+	double getMinDistance() {
+		return this.minDistance;
+	}
+
+	double getTolerance() {
+		return this.tolerance;
+	}
+
+	/**
+	 * @return the farthest a dropped point can be from the simplified squiggle, in pixels
+	 */
+	double getMaxError() {
+		return this.minDistance + this.tolerance;
+	}
+
+	/**
+	 * While drawing, whether to add the point (x, y) after the last point
+	 * added, (lastX, lastY), by the duplicates and distance stages.
+	 */
+	boolean accept(int lastX, int lastY, int x, int y) {
+		long dx = x - lastX, dy = y - lastY;
+		return (dx != 0 || dy != 0) && dx * dx + dy * dy >= this.minDistance * this.minDistance;
+	}
+
+	/**
+	 * @return the points of points that all three stages keep, in a new buffer
+	 */
+	PointBuffer simplify(PointBuffer points) {
+		int n = points.size();
+		PointBuffer kept = new PointBuffer();
+		if (n == 0) {
+			return kept;
+		}
+		// Duplicates and distance
+		kept.add(points.getX(0), points.getY(0));
+		for (int i = 1; i < n; i++) {
+			int x = points.getX(i), y = points.getY(i);
+			int last = kept.size() - 1;
+			if (this.accept(kept.getX(last), kept.getY(last), x, y)
+					|| (i == n - 1 && (x != kept.getX(last) || y != kept.getY(last)))) {
+				kept.add(x, y);
+			}
+		}
+		if (this.tolerance <= 0 || kept.size() < 3) {
+			return kept;
+		}
+
+		// Ramer-Douglas-Peucker, with an explicit stack so long squiggles can not overflow it
+		int m = kept.size();
+		boolean[] keep = new boolean[m];
+		keep[0] = keep[m - 1] = true;
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = m - 1;
+		while (top > 0) {
+			int last = stack[--top], first = stack[--top];
+			int farthest = -1;
+			double farthestDistance = this.tolerance;
+			for (int i = first + 1; i < last; i++) {
+				double d = distanceToSegment(kept.getX(i), kept.getY(i),
+						kept.getX(first), kept.getY(first), kept.getX(last), kept.getY(last));
+				if (d > farthestDistance) {
+					farthest = i;
+					farthestDistance = d;
+				}
+			}
+			if (farthest >= 0) {
+				keep[farthest] = true;
+				if (top + 4 > stack.length) {
+					stack = Arrays.copyOf(stack, 2 * stack.length);
+				}
+				stack[top++] = first;
+				stack[top++] = farthest;
+				stack[top++] = farthest;
+				stack[top++] = last;
+			}
+		}
+		PointBuffer simplified = new PointBuffer();
+		for (int i = 0; i < m; i++) {
+			if (keep[i]) {
+				simplified.add(kept.getX(i), kept.getY(i));
+			}
+		}
+		return simplified;
+	}
+
+	/**
+	 * Simplify every squiggle of paintModel, as one edit that can be undone.
+	 * Each squiggle is replaced in turn, so observers are told of each
+	 * replacement rather than of the whole model changing.
+	 * @return the number of points removed
+	 */
+	long simplify(PaintModel paintModel) {
+		long removed = 0;
+		ArrayList<PaintCommand> commands = paintModel.getCommands();
+		paintModel.getUndoManager().beginGroup();
+		try {
+			for (int i = 0; i < commands.size(); i++) {
+				if (commands.get(i) instanceof SquiggleCommand) {
+					SquiggleCommand squiggle = (SquiggleCommand) commands.get(i);
+					SquiggleCommand simplified = squiggle.copyMovedBy(0, 0);
+					simplified.simplify(this);
+					if (simplified.getPointCount() < squiggle.getPointCount()) {
+						removed += squiggle.getPointCount() - simplified.getPointCount();
+						paintModel.replace(i, simplified);
+					}
+				}
+			}
+		} finally {
+			paintModel.getUndoManager().endGroup();
+		}
+		return removed;
+	}
+
+	/**
+	 * @return the distance from (x, y) to the segment from (x1, y1) to (x2, y2)
+	 */
+	private static double distanceToSegment(int x, int y, int x1, int y1, int x2, int y2) {
+		double dx = x2 - x1, dy = y2 - y1;
+		double lengthSquared = dx * dx + dy * dy;
+		double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+		return Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+	}
+
+	/**
+	 * Simplify the squiggles of a save file, text or binary, into a new
+	 * text save file, reporting the points removed.
+	 *
+	 * Run with
+	 * java ca.utoronto.utm.paint.SquiggleSimplifier input output [minDistance [tolerance]]
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: SquiggleSimplifier input output [minDistance [tolerance]]");
+			System.exit(2);
+		}
+		File file = new File(args[0]);
+		PaintModel paintModel = new PaintModel();
+		boolean parsed;
+		String errorMessage;
+		if (BinaryPaintFileParser.isBinary(file)) {
+			BinaryPaintFileParser parser = new BinaryPaintFileParser();
+			parsed = parser.parse(file, paintModel);
+			errorMessage = parser.getErrorMessage();
+		} else {
+			PaintFileParser parser = new PaintFileParser();
+			parsed = parser.parse(file, paintModel);
+			errorMessage = parser.getErrorMessage();
+		}
+		if (!parsed) {
+			System.err.println(file + ": " + errorMessage);
+			System.exit(1);
+		}
+		SquiggleSimplifier simplifier = new SquiggleSimplifier(
+				args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_MIN_DISTANCE,
+				args.length > 3 ? Double.parseDouble(args[3]) : DEFAULT_TOLERANCE);
+		long points = 0;
+		for (PaintCommand c : paintModel.getCommands()) {
+			if (c instanceof SquiggleCommand) {
+				points += ((SquiggleCommand) c).getPointCount();
+			}
+		}
+		long removed = simplifier.simplify(paintModel);
+		try (Writer out = new FileWriter(args[1])) {
+			new SaveVisitor(out, paintModel).save();
+		}
+		System.out.printf("Removed %d of %d squiggle points, moving none more than %.1f pixels%n",
+				removed, points, simplifier.getMaxError());
+	}
+}
@@ -0,0 +1,142 @@
+package ca.utoronto.utm.paint;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class SquiggleSimplifierTest {
+
+	private static final int WALKS = 50;
+	private static final int CHECKED_WALKS = 10; // each point against the whole result, so fewer
+	private static final int POINTS = 2000; // per walk
+
+	/**
+	 * @return the points of a hand drawn stroke: the mouse moves about a
+	 * pixel between drag events, turning a little each time
+	 */
+	private PointBuffer randomDrag(Random random) {
+		PointBuffer points = new PointBuffer();
+		double x = 250, y = 250, heading = 2 * Math.PI * random.nextDouble();
+		for (int i = 0; i < POINTS; i++) {
+			points.add((int) Math.round(x), (int) Math.round(y));
+			heading += 0.3 * random.nextGaussian();
+			x += Math.cos(heading);
+			y += Math.sin(heading);
+		}
+		return points;
+	}
+
+	/**
+	 * @return the points of a shaky stroke, which jumps up to two pixels
+	 * either way between events and often not at all
+	 */
+	private PointBuffer randomJitter(Random random) {
+		PointBuffer points = new PointBuffer();
+		int x = 250, y = 250;
+		for (int i = 0; i < POINTS; i++) {
+			points.add(x, y);
+			x += random.nextInt(5) - 2;
+			y += random.nextInt(5) - 2;
+		}
+		return points;
+	}
+
+	/**
+	 * @return the distance from (x, y) to the nearest point of the polyline through points
+	 */
+	private double distanceToPolyline(int x, int y, PointBuffer points) {
+		double nearest = Math.hypot(x - points.getX(0), y - points.getY(0));
+		for (int i = 1; i < points.size(); i++) {
+			double x1 = points.getX(i - 1), y1 = points.getY(i - 1);
+			double dx = points.getX(i) - x1, dy = points.getY(i) - y1;
+			double lengthSquared = dx * dx + dy * dy;
+			double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+			nearest = Math.min(nearest, Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy)));
+		}
+		return nearest;
+	}
+
+	@Test
+	public void errorBoundTest() {
+		Random random = new Random(20);
+		for (double tolerance : new double[] { 0, SquiggleSimplifier.DEFAULT_TOLERANCE, 3 }) {
+			SquiggleSimplifier simplifier = new SquiggleSimplifier(SquiggleSimplifier.DEFAULT_MIN_DISTANCE, tolerance);
+			for (int walk = 0; walk < CHECKED_WALKS; walk++) {
+				PointBuffer points = walk % 2 == 0 ? this.randomDrag(random) : this.randomJitter(random);
+				PointBuffer simplified = simplifier.simplify(points);
+				int last = points.size() - 1, simplifiedLast = simplified.size() - 1;
+				assertEquals("First x kept", points.getX(0), simplified.getX(0));
+				assertEquals("First y kept", points.getY(0), simplified.getY(0));
+				assertEquals("Last x kept", points.getX(last), simplified.getX(simplifiedLast));
+				assertEquals("Last y kept", points.getY(last), simplified.getY(simplifiedLast));
+				for (int i = 0; i < points.size(); i++) {
+					double error = this.distanceToPolyline(points.getX(i), points.getY(i), simplified);
+					assertTrue("Point " + i + " is " + error + " from the simplified squiggle at tolerance " + tolerance,
+							error <= simplifier.getMaxError());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void pointsKeptTest() {
+		Random random = new Random(20);
+		SquiggleSimplifier simplifier = new SquiggleSimplifier(SquiggleSimplifier.DEFAULT_MIN_DISTANCE,
+				SquiggleSimplifier.DEFAULT_TOLERANCE);
+		long points = 0, kept = 0;
+		for (int walk = 0; walk < WALKS; walk++) {
+			PointBuffer walked = this.randomDrag(random);
+			points += walked.size();
+			kept += simplifier.simplify(walked).size();
+		}
+		double ratio = (double) kept / points;
+		assertTrue("Kept " + ratio + " of the points, not about 12%", ratio > 0.08 && ratio < 0.16);
+	}
+
+	@Test
+	public void simplifyModelTest() {
+		PaintModel paintModel = new PaintModel();
+		Random random = new Random(20);
+		for (int i = 0; i < 10; i++) {
+			if (i % 3 == 0) {
+				paintModel.startCommand(new CircleCommand(new Point(10 * i, 10 * i), 5));
+			} else {
+				SquiggleCommand squiggle = new SquiggleCommand();
+				PointBuffer points = this.randomDrag(random);
+				for (int j = 0; j < points.size(); j++) {
+					squiggle.add(points.getX(j), points.getY(j));
+				}
+				paintModel.startCommand(squiggle);
+			}
+			paintModel.finishCommand();
+		}
+		Object[] before = paintModel.getCommands().toArray();
+		ArrayList<Object> changes = new ArrayList<Object>();
+		paintModel.addObserver((o, arg) -> changes.add(arg));
+		long removed = new SquiggleSimplifier(SquiggleSimplifier.DEFAULT_MIN_DISTANCE,
+				SquiggleSimplifier.DEFAULT_TOLERANCE).simplify(paintModel);
+		assertTrue("Points removed", removed > 0);
+		for (Object change : changes) {
+			assertTrue("Observers told of each replacement, not the whole model: " + change, change instanceof PaintChange);
+		}
+		assertEquals("Command count", before.length, paintModel.getCommands().size());
+		for (int i = 0; i < before.length; i++) {
+			PaintCommand command = paintModel.getCommands().get(i);
+			if (before[i] instanceof SquiggleCommand) {
+				assertNotSame("Squiggle " + i + " replaced", before[i], command);
+				assertEquals("Squiggle " + i + " source untouched", POINTS, ((SquiggleCommand) before[i]).getPointCount());
+				assertTrue("Squiggle " + i + " simplified", ((SquiggleCommand) command).getPointCount() < POINTS);
+			} else {
+				assertSame("Circle " + i + " kept", before[i], command);
+			}
+			assertTrue("Command " + i + " found where it draws", paintModel.getCommandsIn(command.getBounds()).contains(command));
+		}
+		Object[] after = paintModel.getCommands().toArray();
+		paintModel.undo();
+		assertArrayEquals("Undone", before, paintModel.getCommands().toArray());
+		paintModel.redo();
+		assertArrayEquals("Redone", after, paintModel.getCommands().toArray());
+	}
+}
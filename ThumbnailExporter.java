@@ -0,0 +1,104 @@
+package ca.utoronto.utm.paint;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Renders every save file in a directory, text or binary, to a PNG
+ * thumbnail of the canvas, without JavaFX, so it runs on a headless server.
+ * Files are parsed and rendered on one thread per core, and the throughput
+ * is reported in files per second. Thumbnails larger than a tile are drawn
+ * by a TileRenderer, so a few large exports also use every core.
+ *
+ * Run with
+ * java -Djava.awt.headless=true ca.utoronto.utm.paint.ThumbnailExporter inputDirectory outputDirectory [size [threads]]
+ */
+public class ThumbnailExporter {
+	static final int DEFAULT_SIZE = 128;
+
+	private File outputDirectory;
+	private int size; // width and height of the thumbnails
+
+	ThumbnailExporter(File outputDirectory, int size) {
+		this.outputDirectory = outputDirectory;
+		this.size = size;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length < 2) {
+			System.err.println("Usage: ThumbnailExporter inputDirectory outputDirectory [size [threads]]");
+			System.exit(2);
+		}
+		File[] files = new File(args[0]).listFiles(File::isFile);
+		if (files == null) {
+			System.err.println(args[0] + " is not a directory");
+			System.exit(2);
+		}
+		File outputDirectory = new File(args[1]);
+		outputDirectory.mkdirs();
+		int size = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SIZE;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		ThumbnailExporter exporter = new ThumbnailExporter(outputDirectory, size);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		long start = System.nanoTime();
+		ArrayList<Future<String>> results = new ArrayList<Future<String>>();
+		for (File file : files) {
+			results.add(pool.submit(() -> exporter.export(file)));
+		}
+		int exported = 0;
+		for (int i = 0; i < files.length; i++) {
+			try {
+				String errorMessage = results.get(i).get();
+				if (errorMessage.isEmpty()) {
+					exported++;
+				} else {
+					System.err.println(files[i] + ": " + errorMessage);
+				}
+			} catch (ExecutionException e) {
+				System.err.println(files[i] + ": " + e.getCause());
+			}
+		}
+		pool.shutdown();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("Exported %d of %d files in %.2f s on %d threads, %.1f files/sec%n",
+				exported, files.length, seconds, threads, exported / seconds);
+	}
+
+	/**
+	 * Render file to a PNG of the same name, plus .png, in the output directory.
+	 * @return the parser's error message if file is not a save file, otherwise ""
+	 * @throws IOException if file can not be read or the PNG written
+	 */
+	String export(File file) throws IOException {
+		PaintModel paintModel = new PaintModel();
+		if (BinaryPaintFileParser.isBinary(file)) {
+			BinaryPaintFileParser parser = new BinaryPaintFileParser();
+			if (!parser.parse(file, paintModel)) {
+				return parser.getErrorMessage();
+			}
+		} else {
+			PaintFileParser parser = new PaintFileParser();
+			if (!parser.parse(file, paintModel)) {
+				return parser.getErrorMessage();
+			}
+		}
+		File png = new File(this.outputDirectory, file.getName() + ".png");
+		BufferedImage image;
+		if (this.size > TileRenderer.DEFAULT_TILE_SIZE) {
+			image = new TileRenderer().render(paintModel.getCommands(), ImageRenderer.CANVAS, this.size, this.size);
+		} else {
+			image = ImageRenderer.render(paintModel.getCommands(), ImageRenderer.CANVAS, this.size, this.size);
+		}
+		ImageIO.write(image, "png", png);
+		return "";
+	}
+}
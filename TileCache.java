@@ -0,0 +1,190 @@
+package ca.utoronto.utm.paint;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * Keeps the committed layer of a PaintModel as square images, tiles, so a
+ * view can be repainted by drawing the tiles it covers rather than the
+ * commands. The tiles of a zoom level split the document, scaled by the
+ * level's scale, into TILE_SIZE canvas pixels squares, so tile (tx, ty)
+ * shows document pixels tx * TILE_SIZE / scale onwards. Tiles are keyed by
+ * the whole zoom level, not the scale, so a level's tiles are found again
+ * however the view came back to it.
+ *
+ * A tile is drawn the first time it is needed, with
+ * PaintModel.executeCommittedOnce on a canvas of its own that is then copied
+ * into an image, so it looks exactly as the commands drawn directly would.
+ * It is kept until a command changes inside it or it is the least recently
+ * used when the tiles take more than the budget. Hits, misses and
+ * evictions are counted by PaintMetrics.
+ */
+class TileCache {
+	static final int TILE_SIZE = 256; // canvas pixels along each side of a tile
+	static final long DEFAULT_BUDGET = 64L << 20; // bytes
+	private static final long TILE_BYTES = 4L * TILE_SIZE * TILE_SIZE;
+
+	/**
+	 * Which tile: its zoom level and where it is among the tiles of that level.
+	 */
+	private static class Key {
+		final int zoom;
+		final int tx, ty;
+
+		Key(int zoom, int tx, int ty) {
+			this.zoom = zoom;
+			this.tx = tx;
+			this.ty = ty;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return this.zoom == other.zoom && this.tx == other.tx && this.ty == other.ty;
+		}
+
+		@Override
+		public int hashCode() {
+			return (this.zoom * 31 + this.tx) * 31 + this.ty;
+		}
+	}
+
+	private static class Tile {
+		BoundingBox region; // the document pixels it shows
+		WritableImage image;
+	}
+
+	private PaintModel model;
+	private long budget; // most bytes the tile images may take
+	private long bytes = 0; // they take now
+	private LinkedHashMap<Key, Tile> tiles = new LinkedHashMap<Key, Tile>(16, 0.75f, true); // least recently used first
+	private Canvas canvas = new Canvas(TILE_SIZE, TILE_SIZE); // tiles are drawn on, then copied
+	private SnapshotParameters parameters = new SnapshotParameters();
+
+	TileCache(long budget) {
+		this.budget = budget;
+		this.parameters.setFill(Color.TRANSPARENT);
+	}
+
+	/**
+	 * Cache the committed layer of model, dropping the tiles of the last one.
+	 */
+	void setPaintModel(PaintModel model) {
+		this.model = model;
+		this.clear();
+	}
+
+	/**
+	 * Keep the tiles within budget bytes, evicting the least recently used.
+	 */
+	void setBudget(long budget) {
+		this.budget = budget;
+		this.evict();
+	}
+
+	long getBudget() {
+		return this.budget;
+	}
+
+	/**
+	 * @return the bytes the tile images take
+	 */
+	long getBytes() {
+		return this.bytes;
+	}
+
+	/**
+	 * Draw the tiles covering region of the canvas g draws on, which shows
+	 * the document through viewport, drawing those not cached first.
+	 * @param region canvas pixels
+	 * @return the number of commands executed drawing tiles
+	 */
+	int draw(GraphicsContext g, Viewport viewport, BoundingBox region) {
+		double scale = viewport.getScale();
+		long left = Math.round(viewport.getOriginX() * scale), top = Math.round(viewport.getOriginY() * scale);
+		int executed = 0;
+		for (long ty = Math.floorDiv(top + region.minY, TILE_SIZE); ty <= Math.floorDiv(top + region.maxY - 1, TILE_SIZE); ty++) {
+			for (long tx = Math.floorDiv(left + region.minX, TILE_SIZE); tx <= Math.floorDiv(left + region.maxX - 1, TILE_SIZE); tx++) {
+				Key key = new Key(viewport.getZoom(), (int) tx, (int) ty);
+				Tile tile = this.tiles.get(key);
+				if (tile == null) {
+					tile = new Tile();
+					executed += this.render(key, tile);
+					this.tiles.put(key, tile);
+					this.bytes += TILE_BYTES;
+					PaintMetrics.get().tileMissed();
+					this.evict();
+				} else {
+					PaintMetrics.get().tileHit();
+				}
+				g.drawImage(tile.image, tx * TILE_SIZE - left, ty * TILE_SIZE - top);
+			}
+		}
+		PaintMetrics.get().tileCacheSize(this.bytes);
+		return executed;
+	}
+
+	/**
+	 * Draw the tile at key into a new image.
+	 * @return the number of commands executed
+	 */
+	private int render(Key key, Tile tile) {
+		double scale = Viewport.scaleOf(key.zoom);
+		long x = (long) key.tx * TILE_SIZE, y = (long) key.ty * TILE_SIZE; // scaled document pixels
+		tile.region = new BoundingBox((int) Math.floor(x / scale), (int) Math.floor(y / scale),
+				(int) Math.ceil((x + TILE_SIZE) / scale), (int) Math.ceil((y + TILE_SIZE) / scale));
+		GraphicsContext g = this.canvas.getGraphicsContext2D();
+		g.clearRect(0, 0, TILE_SIZE, TILE_SIZE);
+		g.save();
+		g.setTransform(scale, 0, 0, scale, -x, -y);
+		int executed = this.model.executeCommittedOnce(g, tile.region, scale);
+		g.restore();
+		tile.image = new WritableImage(TILE_SIZE, TILE_SIZE);
+		this.canvas.snapshot(this.parameters, tile.image);
+		return executed;
+	}
+
+	/**
+	 * Drop the tiles showing any of region, at every zoom level, after commands changed there.
+	 * @param region document pixels
+	 */
+	void invalidate(BoundingBox region) {
+		Iterator<Tile> i = this.tiles.values().iterator();
+		while (i.hasNext()) {
+			if (i.next().region.intersects(region)) {
+				i.remove();
+				this.bytes -= TILE_BYTES;
+			}
+		}
+	}
+
+	/**
+	 * Drop every tile, after the whole model changed.
+	 */
+	void clear() {
+		this.tiles.clear();
+		this.bytes = 0;
+	}
+
+	/**
+	 * Evict the least recently used tiles until the rest fit the budget.
+	 */
+	private void evict() {
+		Iterator<Tile> i = this.tiles.values().iterator();
+		while (this.bytes > this.budget && i.hasNext()) {
+			i.next();
+			i.remove();
+			this.bytes -= TILE_BYTES;
+			PaintMetrics.get().tileEvicted();
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package ca.utoronto.utm.paint;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Renders a drawing into a BufferedImage as square tiles, drawn at the same
+ * time on a fork-join pool, for exporting large drawings at high resolution.
+ *
+ * The commands are first sorted into the tiles their bounds touch, in one
+ * pass in drawing order, so each tile draws only its own commands, still in
+ * the painter's order of the list. Each tile is then drawn by an
+ * ImageRenderer into its part of the image, with the same transform as a
+ * single ImageRenderer over the whole image, offset by whole pixels. So the
+ * result matches ImageRenderer.render up to anti-aliasing: Java2D flattens
+ * curves clipped to a tile slightly differently, moving edge pixels by a
+ * few levels. Running with -Dsun.java2d.renderer.clip=false makes them match
+ * pixel for pixel.
+ *
+ * Rendering can be cancelled: each tile checks before it starts, so the
+ * tiles not yet started are skipped and render returns without an image.
+ */
+class TileRenderer {
+	static final int DEFAULT_TILE_SIZE = 256;
+
+	private ForkJoinPool pool;
+	private int tileSize; // pixels along each side of a tile
+
+	TileRenderer() {
+		this(ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+	}
+
+	TileRenderer(ForkJoinPool pool, int tileSize) {
+		this.pool = pool;
+		this.tileSize = tileSize;
+	}
+
+	/**
+	 * Render region of the drawing made by commands, scaled to fill a new
+	 * width by height image on a white background, as ImageRenderer.render does.
+	 * The commands must not change until this returns.
+	 * @return the image
+	 */
+	BufferedImage render(List<PaintCommand> commands, BoundingBox region, int width, int height) {
+		return this.render(commands, region, width, height, () -> false);
+	}
+
+	/**
+	 * Render as above, unless cancelled becomes true first.
+	 * @param cancelled checked before each tile is drawn, on any thread
+	 * @return the image, or null if cancelled
+	 */
+	BufferedImage render(List<PaintCommand> commands, BoundingBox region, int width, int height, BooleanSupplier cancelled) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		double scaleX = (double) width / region.getWidth(), scaleY = (double) height / region.getHeight();
+		int columns = (width + this.tileSize - 1) / this.tileSize;
+		int rows = (height + this.tileSize - 1) / this.tileSize;
+
+		// Sort the commands into the tiles they may draw in, keeping their order
+		ArrayList<ArrayList<PaintCommand>> tiles = new ArrayList<ArrayList<PaintCommand>>(columns * rows);
+		for (int i = 0; i < columns * rows; i++) {
+			tiles.add(new ArrayList<PaintCommand>());
+		}
+		for (PaintCommand c : commands) {
+			BoundingBox b = c.getBounds();
+			if (!b.intersects(region)) {
+				continue;
+			}
+			// The pixels b covers, plus one for rounding in the scale
+			int minColumn = this.tileOf((b.minX - region.minX) * scaleX - 1, columns);
+			int maxColumn = this.tileOf((b.maxX - region.minX) * scaleX + 1, columns);
+			int minRow = this.tileOf((b.minY - region.minY) * scaleY - 1, rows);
+			int maxRow = this.tileOf((b.maxY - region.minY) * scaleY + 1, rows);
+			for (int row = minRow; row <= maxRow; row++) {
+				for (int column = minColumn; column <= maxColumn; column++) {
+					tiles.get(row * columns + column).add(c);
+				}
+			}
+		}
+
+		ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>(tiles.size());
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				int x = column * this.tileSize, y = row * this.tileSize;
+				ArrayList<PaintCommand> tile = tiles.get(row * columns + column);
+				tasks.add(() -> {
+					if (cancelled.getAsBoolean()) {
+						return null;
+					}
+					int tileWidth = Math.min(this.tileSize, width - x), tileHeight = Math.min(this.tileSize, height - y);
+					Graphics2D g = image.getSubimage(x, y, tileWidth, tileHeight).createGraphics();
+					try {
+						g.setColor(java.awt.Color.WHITE);
+						g.fillRect(0, 0, tileWidth, tileHeight);
+						g.clipRect(0, 0, tileWidth, tileHeight); // lets the ImageRenderer skip what is outside
+						g.translate(-x, -y);
+						g.scale(scaleX, scaleY);
+						g.translate(-region.minX, -region.minY);
+						new ImageRenderer(g).render(tile);
+					} finally {
+						g.dispose();
+					}
+					return null;
+				});
+			}
+		}
+		try {
+			for (Future<Void> future : this.pool.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			if (cancelled.getAsBoolean()) {
+				return null; // the interrupt was the cancel; the tiles left will skip themselves
+			}
+			throw new IllegalStateException("Interrupted while rendering", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("A tile failed to render", e.getCause());
+		}
+		return cancelled.getAsBoolean() ? null : image;
+	}
+
+	/**
+	 * @return the index, clamped to 0 <= index < count, of the tile holding pixel coordinate
+	 */
+	private int tileOf(double coordinate, int count) {
+		return (int) Math.max(0, Math.min(count - 1, Math.floor(coordinate / this.tileSize)));
+	}
+}
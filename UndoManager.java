@@ -0,0 +1,319 @@
+package ca.utoronto.utm.paint;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * The undo and redo history of a PaintModel. Each entry is a small delta,
+ * a command that was added to, removed from or replaced in the model and
+ * where, never a copy of the model, so undoing or redoing one only touches
+ * that command.
+ * A command keeps the state it had when drawn, so an entry only needs the
+ * command itself.
+ *
+ * Commands that are out of the model, such as an added command that was
+ * undone, are kept alive only by the history. The history counts the memory
+ * those commands hold, and once it exceeds the memory budget it evicts the
+ * oldest undo entries, and then the redo entries furthest from being redone.
+ *
+ * Edits recorded between beginGroup and endGroup, such as the commands of
+ * one paste, form a single entry that is undone and redone as a whole.
+ */
+class UndoManager {
+	static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+	private static final long EDIT_BYTES = 32; // rough size of an edit itself
+	private static final long COMMAND_BYTES = 64; // rough size of a command without its points
+	private static final long POINT_BYTES = 10; // a squiggle point: two ints, with room to grow
+
+	/**
+	 * A change to the model that can be undone and redone.
+	 */
+	private abstract static class Edit {
+		PaintCommand command;
+		int index; // the command's position in the model's commands
+
+		Edit(PaintCommand command, int index) {
+			this.command = command;
+			this.index = index;
+		}
+
+		abstract void undo(PaintModel paintModel);
+
+		abstract void redo(PaintModel paintModel);
+
+		/**
+		 * @param done whether the edit is applied to the model
+		 * @return the bytes only the history keeps alive for this edit
+		 */
+		abstract long retainedBytes(boolean done);
+	}
+
+	/**
+	 * The command was added at index.
+	 */
+	private static class AddEdit extends Edit {
+		AddEdit(PaintCommand command, int index) {
+			super(command, index);
+		}
+
+		@Override
+		void undo(PaintModel paintModel) {
+			paintModel.remove(this.index);
+		}
+
+		@Override
+		void redo(PaintModel paintModel) {
+			paintModel.insert(this.index, this.command);
+		}
+
+		@Override
+		long retainedBytes(boolean done) {
+			return done ? EDIT_BYTES : EDIT_BYTES + sizeOf(this.command);
+		}
+	}
+
+	/**
+	 * Several edits made as one, with no command of its own.
+	 */
+	private static class GroupEdit extends Edit {
+		ArrayList<Edit> edits = new ArrayList<Edit>(); // in the order they were made
+
+		GroupEdit() {
+			super(null, -1);
+		}
+
+		@Override
+		void undo(PaintModel paintModel) {
+			for (int i = this.edits.size() - 1; i >= 0; i--) {
+				this.edits.get(i).undo(paintModel);
+			}
+		}
+
+		@Override
+		void redo(PaintModel paintModel) {
+			for (Edit edit : this.edits) {
+				edit.redo(paintModel);
+			}
+		}
+
+		@Override
+		long retainedBytes(boolean done) {
+			long bytes = EDIT_BYTES;
+			for (Edit edit : this.edits) {
+				bytes += edit.retainedBytes(done);
+			}
+			return bytes;
+		}
+	}
+
+	/**
+	 * The command was removed from index.
+	 */
+	private static class RemoveEdit extends Edit {
+		RemoveEdit(PaintCommand command, int index) {
+			super(command, index);
+		}
+
+		@Override
+		void undo(PaintModel paintModel) {
+			paintModel.insert(this.index, this.command);
+		}
+
+		@Override
+		void redo(PaintModel paintModel) {
+			paintModel.remove(this.index);
+		}
+
+		@Override
+		long retainedBytes(boolean done) {
+			return done ? EDIT_BYTES + sizeOf(this.command) : EDIT_BYTES;
+		}
+	}
+
+	/**
+	 * The command at index was replaced by replacement.
+	 */
+	private static class ReplaceEdit extends Edit {
+		PaintCommand replacement;
+
+		ReplaceEdit(PaintCommand command, PaintCommand replacement, int index) {
+			super(command, index);
+			this.replacement = replacement;
+		}
+
+		@Override
+		void undo(PaintModel paintModel) {
+			paintModel.set(this.index, this.command);
+		}
+
+		@Override
+		void redo(PaintModel paintModel) {
+			paintModel.set(this.index, this.replacement);
+		}
+
+		@Override
+		long retainedBytes(boolean done) {
+			return EDIT_BYTES + sizeOf(done ? this.command : this.replacement);
+		}
+	}
+
+	private PaintModel paintModel;
+	private ArrayDeque<Edit> undoEdits = new ArrayDeque<Edit>(); // most recent last
+	private ArrayDeque<Edit> redoEdits = new ArrayDeque<Edit>(); // next to redo last
+	private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+	private long retainedBytes = 0; // bytes the history alone keeps alive
+	private GroupEdit group; // collects the edits until endGroup, if any
+	private int groupDepth = 0; // number of unfinished beginGroup calls
+
+	UndoManager(PaintModel paintModel) {
+		this.paintModel = paintModel;
+	}
+
+	/**
+	 * @param memoryBudget the most bytes of commands the history may keep alive
+	 */
+	void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+		this.evict();
+	}
+
+	long getRetainedBytes() {
+		return this.retainedBytes;
+	}
+
+	/**
+	 * Record that command was added to the model at index.
+	 */
+	void added(PaintCommand command, int index) {
+		this.record(new AddEdit(command, index));
+	}
+
+	/**
+	 * Record that command was removed from the model at index.
+	 */
+	void removed(PaintCommand command, int index) {
+		this.record(new RemoveEdit(command, index));
+	}
+
+	/**
+	 * Record that the command at index was replaced by replacement.
+	 */
+	void replaced(PaintCommand command, PaintCommand replacement, int index) {
+		this.record(new ReplaceEdit(command, replacement, index));
+	}
+
+	/**
+	 * Record that command, added by the most recent edit, was moved up to
+	 * index by commands put under it that are not an edit.
+	 */
+	void moved(PaintCommand command, int index) {
+		Edit edit = this.undoEdits.peekLast();
+		if (edit != null && edit.command == command) {
+			edit.index = index;
+		}
+	}
+
+	/**
+	 * Start collecting edits into one. Groups may be nested, and only the
+	 * outermost endGroup records the collected edits.
+	 */
+	void beginGroup() {
+		if (this.groupDepth++ == 0) {
+			this.group = new GroupEdit();
+		}
+	}
+
+	/**
+	 * Record the edits since the matching beginGroup as a single edit.
+	 */
+	void endGroup() {
+		if (--this.groupDepth > 0) {
+			return;
+		}
+		GroupEdit group = this.group;
+		this.group = null;
+		if (!group.edits.isEmpty()) {
+			this.record(group);
+		}
+	}
+
+	boolean canUndo() {
+		return !this.undoEdits.isEmpty();
+	}
+
+	boolean canRedo() {
+		return !this.redoEdits.isEmpty();
+	}
+
+	/**
+	 * Undo the most recent edit, if any.
+	 */
+	void undo() {
+		Edit edit = this.undoEdits.pollLast();
+		if (edit == null) {
+			return;
+		}
+		edit.undo(this.paintModel);
+		this.retainedBytes += edit.retainedBytes(false) - edit.retainedBytes(true);
+		this.redoEdits.addLast(edit);
+		this.evict();
+	}
+
+	/**
+	 * Redo the most recently undone edit, if any.
+	 */
+	void redo() {
+		Edit edit = this.redoEdits.pollLast();
+		if (edit == null) {
+			return;
+		}
+		edit.redo(this.paintModel);
+		this.retainedBytes += edit.retainedBytes(true) - edit.retainedBytes(false);
+		this.undoEdits.addLast(edit);
+		this.evict();
+	}
+
+	/**
+	 * Forget all edits.
+	 */
+	void clear() {
+		this.undoEdits.clear();
+		this.redoEdits.clear();
+		this.retainedBytes = 0;
+	}
+
+	private void record(Edit edit) {
+		if (this.group != null) {
+			this.group.edits.add(edit);
+			return;
+		}
+		// A new edit means the undone edits can no longer be redone
+		for (Edit undone : this.redoEdits) {
+			this.retainedBytes -= undone.retainedBytes(false);
+		}
+		this.redoEdits.clear();
+		this.undoEdits.addLast(edit);
+		this.retainedBytes += edit.retainedBytes(true);
+		this.evict();
+	}
+
+	private void evict() {
+		while (this.retainedBytes > this.memoryBudget && !this.undoEdits.isEmpty()) {
+			this.retainedBytes -= this.undoEdits.pollFirst().retainedBytes(true);
+		}
+		while (this.retainedBytes > this.memoryBudget && !this.redoEdits.isEmpty()) {
+			this.retainedBytes -= this.redoEdits.pollFirst().retainedBytes(false);
+		}
+	}
+
+	/**
+	 * @return a rough count of the bytes command holds
+	 */
+	static long sizeOf(PaintCommand command) {
+		if (command instanceof SquiggleCommand) {
+			return COMMAND_BYTES + POINT_BYTES * ((SquiggleCommand) command).getPointCount();
+		}
+		return COMMAND_BYTES;
+	}
+}
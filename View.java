@@ -1,23 +1,29 @@
 package ca.utoronto.utm.paint;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.List;
 
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckMenuItem;
+import javafx.scene.control.Label;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.SeparatorMenuItem;
+import javafx.scene.input.Clipboard;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
@@ -27,22 +33,55 @@ public class View implements EventHandler<ActionEvent> {
 	private PaintPanel paintPanel;
 	private ShapeChooserPanel shapeChooserPanel;
 	private Stage stage;
+
+	private HBox statusBar; // shows the progress of backgroundTask
+	private Label statusLabel;
+	private ProgressBar progressBar;
+	private Task<?> backgroundTask; // the load or save shown in the status bar, if any
+
+	private CheckMenuItem autosaveItem;
+	private AutosaveJournal autosaveJournal; // records each edit while autosaveItem is selected
+	private PaintClipboard clipboard = new PaintClipboard(Clipboard.getSystemClipboard());
+	private CommandIngester ingester; // adds commands from other threads to paintModel
+	private SquiggleSimplifier inputSimplifier = new SquiggleSimplifier(SquiggleSimplifier.DEFAULT_MIN_DISTANCE, 0); // for squiggles as they are drawn
 	
 	private static SaveVisitor saveVisitor;
 	
 	public View(PaintModel model, Stage stage) {
 		this.stage = stage;
 		this.paintModel = model;
+		this.ingester = new CommandIngester(model);
 		initUI(stage);
+		this.autosaveJournal = new AutosaveJournal(AutosaveJournal.getDefaultFile());
+		this.autosaveJournal.start(model);
 	}
 
 	public PaintModel getPaintModel() {
 		return this.paintModel;
 	}
 
+	/**
+	 * @return the simplifier applied to squiggles as they are drawn, which
+	 * smooths them once finished if Smooth New Squiggles is selected
+	 */
+	SquiggleSimplifier getInputSimplifier() {
+		return this.inputSimplifier;
+	}
+
 	public void setPaintModel(PaintModel paintModel) {
 		this.paintModel=paintModel;
 		this.paintPanel.setPaintModel(paintModel);
+		this.ingester.setPaintModel(paintModel);
+		if (this.autosaveItem.isSelected()) {
+			this.autosaveJournal.start(paintModel);
+		}
+	}
+
+	/**
+	 * Stop autosaving and delete the journal, when Paint closes normally.
+	 */
+	public void stopAutosave() {
+		this.autosaveJournal.stop();
 	}
 	private void initUI(Stage stage) {
 
@@ -53,6 +92,7 @@ public class View implements EventHandler<ActionEvent> {
 		root.setTop(createMenuBar());
 		root.setCenter(this.paintPanel);
 		root.setLeft(this.shapeChooserPanel);
+		root.setBottom(createStatusBar());
 
 		Scene scene = new Scene(root);
 		stage.setScene(scene);
@@ -60,6 +100,14 @@ public class View implements EventHandler<ActionEvent> {
 		stage.show();
 	}
 
+	/**
+	 * @return where threads other than the JavaFX thread, such as scripts
+	 * or connections, can add commands to the drawing
+	 */
+	CommandIngester getCommandIngester() {
+		return this.ingester;
+	}
+
 	public PaintPanel getPaintPanel() {
 		return paintPanel;
 	}
@@ -90,6 +138,15 @@ public class View implements EventHandler<ActionEvent> {
 		menuItem.setOnAction(this);
 		menu.getItems().add(menuItem);
 
+		menuItem = new MenuItem("Export PNG");
+		menuItem.setOnAction(this);
+		menu.getItems().add(menuItem);
+
+		this.autosaveItem = new CheckMenuItem("Autosave");
+		this.autosaveItem.setSelected(true);
+		this.autosaveItem.setOnAction(this);
+		menu.getItems().add(this.autosaveItem);
+
 		menu.getItems().add(new SeparatorMenuItem());
 
 		menuItem = new MenuItem("Exit");
@@ -124,74 +181,218 @@ public class View implements EventHandler<ActionEvent> {
 		menuItem.setOnAction(this);
 		menu.getItems().add(menuItem);
 
+		menu.getItems().add(new SeparatorMenuItem());
+
+		menuItem = new CheckMenuItem("Smooth New Squiggles");
+		menuItem.setOnAction(this);
+		menu.getItems().add(menuItem);
+
+		menuItem = new MenuItem("Simplify Squiggles");
+		menuItem.setOnAction(this);
+		menu.getItems().add(menuItem);
+
+		menuBar.getMenus().add(menu);
+
+		// A menu for View
+
+		menu = new Menu("View");
+
+		menuItem = new MenuItem("Zoom In");
+		menuItem.setOnAction(this);
+		menu.getItems().add(menuItem);
+
+		menuItem = new MenuItem("Zoom Out");
+		menuItem.setOnAction(this);
+		menu.getItems().add(menuItem);
+
+		menuItem = new MenuItem("Actual Size");
+		menuItem.setOnAction(this);
+		menu.getItems().add(menuItem);
+
+		menu.getItems().add(new SeparatorMenuItem());
+
+		menuItem = new CheckMenuItem("Cache Tiles");
+		menuItem.setOnAction(this);
+		menu.getItems().add(menuItem);
+
+		menuBar.getMenus().add(menu);
+
+		// A menu for Debug
+
+		menu = new Menu("Debug");
+
+		menuItem = new CheckMenuItem("Metrics Overlay");
+		menuItem.setOnAction(this);
+		menu.getItems().add(menuItem);
+
 		menuBar.getMenus().add(menu);
 
 		return menuBar;
 	}
 
+	/**
+	 * The status bar shows the progress of a background load or save, with a
+	 * button to cancel it. It is hidden while there is none.
+	 */
+	private HBox createStatusBar() {
+		this.statusLabel = new Label();
+		this.progressBar = new ProgressBar();
+		Button cancelButton = new Button("Cancel");
+		cancelButton.setOnAction(e -> {
+			if (this.backgroundTask != null) {
+				this.backgroundTask.cancel();
+			}
+		});
+		this.statusBar = new HBox(10, this.statusLabel, this.progressBar, cancelButton);
+		this.statusBar.setVisible(false);
+		this.statusBar.setManaged(false);
+		return this.statusBar;
+	}
+
+	/**
+	 * Run task on a background thread, showing its progress in the status bar,
+	 * and report it on the JavaFX thread if it fails.
+	 */
+	private void runInBackground(Task<?> task) {
+		this.backgroundTask = task;
+		this.statusLabel.textProperty().bind(task.messageProperty());
+		this.progressBar.progressProperty().bind(task.progressProperty());
+		this.statusBar.setVisible(true);
+		this.statusBar.setManaged(true);
+
+		task.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> this.finishBackground(task));
+		task.addEventHandler(WorkerStateEvent.WORKER_STATE_CANCELLED, e -> this.finishBackground(task));
+		task.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, e -> {
+			this.finishBackground(task);
+			task.getException().printStackTrace();
+			Alert alert = new Alert(AlertType.ERROR);
+			alert.setTitle("Error Message");
+			alert.setHeaderText("Could not complete: " + this.statusLabel.getText());
+			alert.setContentText(String.valueOf(task.getException().getMessage()));
+			alert.showAndWait();
+		});
+
+		Thread thread = new Thread(task);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Hide the status bar, unless another task has taken it over since task started.
+	 */
+	private void finishBackground(Task<?> task) {
+		if (this.backgroundTask != task) {
+			return;
+		}
+		this.backgroundTask = null;
+		this.statusLabel.textProperty().unbind();
+		this.progressBar.progressProperty().unbind();
+		this.statusBar.setVisible(false);
+		this.statusBar.setManaged(false);
+	}
+
 	public void setPaintPanelShapeManipulatorStrategy(ShapeManipulatorStrategy strategy) {
 		this.paintPanel.setShapeManipulatorStrategy(strategy);
 	}
 
 	@Override
 	public void handle(ActionEvent event) {
-		System.out.println(((MenuItem) event.getSource()).getText());
 		String command = ((MenuItem) event.getSource()).getText();
 		if (command.equals("Open")) {
 			FileChooser fc = new FileChooser();
 			File file = fc.showOpenDialog(this.stage);
 
 			if (file != null) {
-				System.out.println("Opening: " + file.getName() + "." + "\n");
-				BufferedReader bufferedReader = null;
-				try {
-					bufferedReader = new BufferedReader(new FileReader(file));
-				} catch (FileNotFoundException e1) {
-					e1.printStackTrace();
-				}
-				PaintModel paintModel = new PaintModel();
-				PaintFileParser parser = new PaintFileParser();
-				try {
-					boolean b = parser.parse(bufferedReader,  paintModel);
-					if (b == false) {
+				LoadTask task = new LoadTask(file);
+				task.setOnSucceeded(e -> {
+					if (!task.getErrorMessage().equals("")) {
 						Alert alert = new Alert(AlertType.INFORMATION);
 				        alert.setTitle("Error Message");
 				        alert.setHeaderText("File not in correct format!");
-				        alert.setContentText(parser.getErrorMessage());
+				        alert.setContentText(task.getErrorMessage());
 				        alert.showAndWait();
 					}
-				} catch (FileNotFoundException e) {
-					e.printStackTrace();
-				}
-				this.setPaintModel(paintModel);
-			} else {
-				System.out.println("Open command cancelled by user." + "\n");
+					this.setPaintModel(task.getValue());
+				});
+				this.runInBackground(task);
 			}
 		} else if (command.equals("Save")) {
 			FileChooser fc = new FileChooser();
 			File file = fc.showSaveDialog(this.stage);
 
 			if (file != null) {
-				System.out.println("Saving: " + file.getName() + "." + "\n");
-				BufferedWriter wr = null;
-				PrintWriter writer = null;
-				try {
-					writer = new PrintWriter(file);
-					View.save(writer, paintModel);
-//					saveVisitor = new SaveVisitor(writer, this.paintModel);
-//					saveVisitor.save();
-				} catch (FileNotFoundException e) {
-					e.printStackTrace();
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
-				finally {
-					writer.close();
-				}
+				// Save a snapshot of the commands, so drawing can go on during the save
+				this.runInBackground(new SaveTask(file, this.paintModel.snapshot()));
+			}
+		}
+		else if (command.equals("Export PNG")) {
+			FileChooser fc = new FileChooser();
+			File file = fc.showSaveDialog(this.stage);
+			if (file != null) {
+				this.runInBackground(new ExportTask(file, this.paintModel.snapshot()));
+			}
+		}
+		else if (command.equals("Autosave")) {
+			if (this.autosaveItem.isSelected()) {
+				this.autosaveJournal.start(this.paintModel);
 			} else {
-				System.out.println("Save command cancelled by user." + "\n");
+				this.autosaveJournal.stop();
+			}
+		}
+		else if (command.equals("Cut")) {
+			List<PaintCommand> selection = this.paintModel.getSelection();
+			if (!selection.isEmpty()) {
+				this.clipboard.copy(selection);
+				this.paintModel.removeCommands(selection);
+			}
+		}
+		else if (command.equals("Copy")) {
+			List<PaintCommand> selection = this.paintModel.getSelection();
+			if (!selection.isEmpty()) {
+				this.clipboard.copy(selection);
 			}
-		} 
+		}
+		else if (command.equals("Paste")) {
+			List<PaintCommand> pasted = this.clipboard.paste();
+			this.paintModel.addCommands(pasted);
+			this.paintModel.setSelection(pasted);
+		}
+		else if (command.equals("Smooth New Squiggles")) {
+			boolean smooth = ((CheckMenuItem) event.getSource()).isSelected();
+			this.inputSimplifier = new SquiggleSimplifier(SquiggleSimplifier.DEFAULT_MIN_DISTANCE,
+					smooth ? SquiggleSimplifier.DEFAULT_TOLERANCE : 0);
+		}
+		else if (command.equals("Simplify Squiggles")) {
+			SquiggleSimplifier simplifier = new SquiggleSimplifier(SquiggleSimplifier.DEFAULT_MIN_DISTANCE,
+					SquiggleSimplifier.DEFAULT_TOLERANCE);
+			long removed = simplifier.simplify(this.paintModel);
+			Alert alert = new Alert(AlertType.INFORMATION, String.format(
+					"Removed %d points. No part of a squiggle moved more than %.1f pixels.",
+					removed, simplifier.getMaxError()));
+			alert.setHeaderText("Simplify Squiggles");
+			alert.showAndWait();
+		}
+		else if (command.equals("Zoom In")) {
+			this.paintPanel.zoom(1);
+		}
+		else if (command.equals("Zoom Out")) {
+			this.paintPanel.zoom(-1);
+		}
+		else if (command.equals("Actual Size")) {
+			this.paintPanel.resetZoom();
+		}
+		else if (command.equals("Cache Tiles")) {
+			this.paintPanel.setTileCacheEnabled(((CheckMenuItem) event.getSource()).isSelected());
+		}
+		else if (command.equals("Metrics Overlay")) {
+			this.paintPanel.setMetricsOverlayVisible(((CheckMenuItem) event.getSource()).isSelected());
+		}
+		else if (command.equals("Undo")) {
+			this.paintModel.undo();
+		}
+		else if (command.equals("Redo")) {
+			this.paintModel.redo();
+		}
 		else if (command.equals("New")) {
 			this.paintModel.reset();
 			//this.setPaintModel(new PaintModel());
@@ -0,0 +1,164 @@
+package ca.utoronto.utm.paint;
+
+import javafx.scene.canvas.GraphicsContext;
+
+/**
+ * Maps the document, the unbounded plane of pixels commands are drawn in,
+ * onto a canvas. The document point (x, y) shows at canvas point
+ * ((x - originX) * scale, (y - originY) * scale), so zooming changes the
+ * scale and panning moves the origin.
+ *
+ * The scale is ZOOM_STEP to the power of a whole zoom level, so zooming in
+ * and out again comes back to exactly the same scale, and caches keyed by
+ * the zoom level find what they drew at it before.
+ *
+ * The origin is kept on a whole canvas pixel, so panning never leaves the
+ * drawing straddling pixels, which would blur it.
+ */
+class Viewport {
+	static final double ZOOM_STEP = 1.25; // scale change of one zoom level, a wheel notch
+	static final int MIN_ZOOM = -18; // a scale of about 1/55
+	static final int MAX_ZOOM = 15; // a scale of about 28
+
+	private double originX = 0, originY = 0; // the document point at the top left of the canvas
+	private int zoom = 0; // the zoom level
+	private double scale = 1; // canvas pixels per document pixel, scaleOf(zoom)
+	private double width = 500, height = 500; // of the canvas
+
+	/**
+	 * @return canvas pixels per document pixel at zoom level zoom
+	 */
+	static double scaleOf(int zoom) {
+		return Math.pow(ZOOM_STEP, zoom);
+	}
+
+	/**
+	 * @return canvas pixels per document pixel
+	 */
+	double getScale() {
+		return this.scale;
+	}
+
+	/**
+	 * @return the zoom level, 0 at a scale of 1
+	 */
+	int getZoom() {
+		return this.zoom;
+	}
+
+	/**
+	 * @return the document x coordinate at the left of the canvas
+	 */
+	double getOriginX() {
+		return this.originX;
+	}
+
+	/**
+	 * @return the document y coordinate at the top of the canvas
+	 */
+	double getOriginY() {
+		return this.originY;
+	}
+
+	/**
+	 * The canvas was resized to width by height.
+	 */
+	void setSize(double width, double height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	double toDocumentX(double canvasX) {
+		return this.originX + canvasX / this.scale;
+	}
+
+	double toDocumentY(double canvasY) {
+		return this.originY + canvasY / this.scale;
+	}
+
+	/**
+	 * Move the document by dx, dy canvas pixels.
+	 */
+	void panBy(double dx, double dy) {
+		this.originX -= dx / this.scale;
+		this.originY -= dy / this.scale;
+		this.snap();
+	}
+
+	/**
+	 * Zoom in by levels, or out if it is negative, within MIN_ZOOM and
+	 * MAX_ZOOM, keeping the document point at canvas point (canvasX, canvasY)
+	 * where it is.
+	 */
+	void zoomAt(int levels, double canvasX, double canvasY) {
+		double x = this.toDocumentX(canvasX), y = this.toDocumentY(canvasY);
+		this.zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, this.zoom + levels));
+		this.scale = scaleOf(this.zoom);
+		this.originX = x - canvasX / this.scale;
+		this.originY = y - canvasY / this.scale;
+		this.snap();
+	}
+
+	/**
+	 * Zoom in by levels, or out if it is negative, about the centre of the canvas.
+	 */
+	void zoom(int levels) {
+		this.zoomAt(levels, this.width / 2, this.height / 2);
+	}
+
+	/**
+	 * Back to a scale of 1, the origin at the top left of the canvas.
+	 */
+	void reset() {
+		this.originX = this.originY = 0;
+		this.zoom = 0;
+		this.scale = 1;
+	}
+
+	/**
+	 * @return the document pixels that show on the canvas, at least partly
+	 */
+	BoundingBox getVisibleRegion() {
+		return this.toDocument(new BoundingBox(0, 0, (int) Math.ceil(this.width), (int) Math.ceil(this.height)));
+	}
+
+	/**
+	 * @return the document pixels covering the canvas pixels of box
+	 */
+	BoundingBox toDocument(BoundingBox box) {
+		if (box.isEmpty()) {
+			return BoundingBox.EMPTY;
+		}
+		return new BoundingBox((int) Math.floor(this.toDocumentX(box.minX)), (int) Math.floor(this.toDocumentY(box.minY)),
+				(int) Math.ceil(this.toDocumentX(box.maxX)), (int) Math.ceil(this.toDocumentY(box.maxY)));
+	}
+
+	/**
+	 * @return the canvas pixels covering the document pixels of box
+	 */
+	BoundingBox toCanvas(BoundingBox box) {
+		if (box.isEmpty()) {
+			return BoundingBox.EMPTY;
+		}
+		return new BoundingBox((int) Math.floor((box.minX - this.originX) * this.scale),
+				(int) Math.floor((box.minY - this.originY) * this.scale),
+				(int) Math.ceil((box.maxX - this.originX) * this.scale),
+				(int) Math.ceil((box.maxY - this.originY) * this.scale));
+	}
+
+	/**
+	 * Transform g so it draws in document coordinates.
+	 */
+	void transform(GraphicsContext g) {
+		g.scale(this.scale, this.scale);
+		g.translate(-this.originX, -this.originY);
+	}
+
+	/**
+	 * Round the origin to a whole canvas pixel.
+	 */
+	private void snap() {
+		this.originX = Math.round(this.originX * this.scale) / this.scale;
+		this.originY = Math.round(this.originY * this.scale) / this.scale;
+	}
+}
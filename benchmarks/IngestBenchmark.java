@@ -0,0 +1,208 @@
+package ca.utoronto.utm.paint;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of producer threads putting count commands for one
+ * consumer, each operation passing all of them: through a
+ * CommandIngestQueue drained to a counter, an ArrayBlockingQueue of the
+ * same capacity for comparison, and a CommandIngestQueue drained onto an
+ * observed PaintModel one command at a time, or a chunk at a time with
+ * addCommandsTogether, as the CommandIngester does. Each checks every
+ * command arrives once, in the order its producer put it. See
+ * PaintBenchmarks for how to run them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IngestBenchmark {
+	private static final int BATCH = 256; // commands the consumer takes at once
+
+	@Param({ "1", "2", "4" })
+	public int producers;
+
+	@Param({ "200000" })
+	public int count;
+
+	private PaintCommand[][] commands; // for each producer, the commands it puts
+
+	/**
+	 * Carries one consumer through the commands the producers put.
+	 */
+	private interface Consumer {
+		void consume(int total) throws InterruptedException;
+	}
+
+	/**
+	 * Puts commands somewhere, from any thread.
+	 */
+	private interface Producer {
+		void put(PaintCommand command) throws InterruptedException;
+	}
+
+	@Setup
+	public void setUp() {
+		this.commands = commands(this.producers, this.count / this.producers);
+	}
+
+	@Benchmark
+	public void lockFree() throws InterruptedException {
+		CommandIngestQueue queue = new CommandIngestQueue();
+		Checker checker = new Checker(this.producers);
+		this.run(queue::put, total -> {
+			for (int taken = 0; taken < total; ) {
+				int n = queue.drain(checker, BATCH);
+				if (n == 0) {
+					Thread.yield(); // let the producers run
+				}
+				taken += n;
+			}
+		});
+	}
+
+	@Benchmark
+	public void blockingQueue() throws InterruptedException {
+		ArrayBlockingQueue<PaintCommand> queue = new ArrayBlockingQueue<PaintCommand>(CommandIngestQueue.DEFAULT_CAPACITY);
+		Checker checker = new Checker(this.producers);
+		ArrayList<PaintCommand> batch = new ArrayList<PaintCommand>(BATCH);
+		this.run(queue::put, total -> {
+			for (int taken = 0; taken < total; ) {
+				batch.add(queue.take());
+				queue.drainTo(batch, BATCH - 1);
+				taken += batch.size();
+				batch.forEach(checker);
+				batch.clear();
+			}
+		});
+	}
+
+	@Benchmark
+	public void oneByOne() throws InterruptedException {
+		CommandIngestQueue queue = new CommandIngestQueue();
+		PaintModel paintModel = observed(new PaintModel());
+		this.run(queue::put, total -> {
+			for (int taken = 0; taken < total; ) {
+				int n = queue.drain(paintModel::addCommand, BATCH);
+				if (n == 0) {
+					Thread.yield(); // let the producers run
+				}
+				taken += n;
+			}
+			check(paintModel, total);
+		});
+	}
+
+	@Benchmark
+	public void together() throws InterruptedException {
+		CommandIngestQueue queue = new CommandIngestQueue();
+		PaintModel paintModel = observed(new PaintModel());
+		ArrayList<PaintCommand> chunk = new ArrayList<PaintCommand>(BATCH);
+		this.run(queue::put, total -> {
+			for (int taken = 0; taken < total; ) {
+				int n = queue.drain(chunk::add, BATCH);
+				paintModel.addCommandsTogether(chunk);
+				chunk.clear();
+				if (n == 0) {
+					Thread.yield(); // let the producers run
+				}
+				taken += n;
+			}
+			check(paintModel, total);
+		});
+	}
+
+	/**
+	 * @return paintModel, observed the way the panel observes it, gathering
+	 * the region each change needs repainted
+	 */
+	private static PaintModel observed(PaintModel paintModel) {
+		BoundingBox[] dirty = { BoundingBox.EMPTY };
+		paintModel.addObserver((o, arg) -> {
+			if (arg instanceof PaintChange) {
+				dirty[0] = dirty[0].union(((PaintChange) arg).region);
+			}
+		});
+		return paintModel;
+	}
+
+	private static void check(PaintModel paintModel, int total) {
+		if (paintModel.getCommands().size() != total) {
+			throw new AssertionError(paintModel.getCommands().size() + " commands reached the model");
+		}
+	}
+
+	/**
+	 * Start a thread for each producer putting its commands with producer,
+	 * and carry consumer through them on this thread.
+	 */
+	private void run(Producer producer, Consumer consumer) throws InterruptedException {
+		Thread[] threads = new Thread[this.commands.length];
+		for (int t = 0; t < threads.length; t++) {
+			PaintCommand[] mine = this.commands[t];
+			threads[t] = new Thread(() -> {
+				try {
+					for (PaintCommand c : mine) {
+						producer.put(c);
+					}
+				} catch (InterruptedException e) {
+					throw new AssertionError(e);
+				}
+			});
+			threads[t].start();
+		}
+		consumer.consume(this.commands.length * this.commands[0].length);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	/**
+	 * @return for each producer, perProducer circles whose centre x is the
+	 * producer and y its position in the producer's order
+	 */
+	private static PaintCommand[][] commands(int producers, int perProducer) {
+		PaintCommand[][] commands = new PaintCommand[producers][perProducer];
+		for (int t = 0; t < producers; t++) {
+			for (int i = 0; i < perProducer; i++) {
+				commands[t][i] = new CircleCommand(new Point(t, i), 1);
+			}
+		}
+		return commands;
+	}
+
+	/**
+	 * Checks each producer's commands arrive once each, in order.
+	 */
+	private static class Checker implements java.util.function.Consumer<PaintCommand> {
+		private int[] next;
+
+		Checker(int producers) {
+			this.next = new int[producers];
+		}
+
+		@Override
+		public void accept(PaintCommand command) {
+			Point centre = ((CircleCommand) command).getCentre();
+			if (centre.y != this.next[centre.x]++) {
+				throw new AssertionError("producer " + centre.x + " command " + centre.y + " out of order");
+			}
+		}
+	}
+}
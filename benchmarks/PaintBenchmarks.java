@@ -0,0 +1,47 @@
+package ca.utoronto.utm.paint;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks, all of those in BENCHMARKS, or those whose names
+ * match the given patterns. Each reports throughput and, from its sample
+ * time mode, latency percentiles,
+ * and the GC profiler adds the allocation rate and bytes allocated per
+ * operation. The results are also written as JSON, to the file given by
+ * -Dresults or jmh-results.json, to compare against an earlier run to
+ * find regressions.
+ *
+ * Compile with jmh-core and jmh-generator-annprocess on the class path, so
+ * the annotation processor generates the benchmark harness, then run with
+ * java -cp classes:jmh-core.jar:jopt-simple.jar:commons-math3.jar ca.utoronto.utm.paint.PaintBenchmarks [pattern...]
+ * RenderBenchmark and SquiggleRenderBenchmark draw on a real Canvas, so they
+ * also need the JavaFX modules, given with --module-path $PATH_TO_FX
+ * --add-modules javafx.graphics, which the forked benchmark JVMs inherit.
+ */
+public class PaintBenchmarks {
+	static final Class<?>[] BENCHMARKS = { ParseBenchmark.class, SaveVisitorBenchmark.class, SaveBenchmark.class,
+			RenderBenchmark.class, SquiggleRenderBenchmark.class, TileRenderBenchmark.class, IngestBenchmark.class };
+
+	public static void main(String[] args) throws RunnerException {
+		OptionsBuilder options = new OptionsBuilder();
+		if (args.length == 0) {
+			for (Class<?> benchmark : BENCHMARKS) {
+				options.include(benchmark.getSimpleName());
+			}
+		}
+		for (String pattern : args) {
+			options.include(pattern);
+		}
+		Options built = options.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(System.getProperty("results", "jmh-results.json"))
+				.shouldFailOnError(true)
+				.build();
+		new Runner(built).run();
+	}
+}
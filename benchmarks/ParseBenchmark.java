@@ -0,0 +1,88 @@
+package ca.utoronto.utm.paint;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of loading a drawing: PaintFileParser over a Reader, over
+ * a mapped file and in parallel, and BinaryPaintFileParser, each building
+ * a new PaintModel. See PaintBenchmarks for how to run them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParseBenchmark {
+	@Param({ Workloads.CIRCLES, Workloads.RECTANGLES, Workloads.SQUIGGLES, Workloads.MIXED })
+	public String kind;
+
+	@Param({ "100", "10000" })
+	public int count;
+
+	@Param({ "1000" })
+	public int points;
+
+	private String text;
+	private File textFile, binaryFile;
+
+	@Setup
+	public void setUp() throws IOException {
+		ArrayList<PaintCommand> commands = Workloads.generate(this.kind, this.count, this.points);
+		this.text = Workloads.toText(commands);
+		this.textFile = Workloads.toFile(commands, false);
+		this.binaryFile = Workloads.toFile(commands, true);
+	}
+
+	@Benchmark
+	public PaintModel parseReader() throws IOException {
+		PaintModel paintModel = new PaintModel();
+		PaintFileParser parser = new PaintFileParser();
+		return check(parser.parse(new BufferedReader(new StringReader(this.text)), paintModel), parser.getErrorMessage(), paintModel);
+	}
+
+	@Benchmark
+	public PaintModel parseMapped() throws IOException {
+		PaintModel paintModel = new PaintModel();
+		PaintFileParser parser = new PaintFileParser();
+		return check(parser.parse(this.textFile, paintModel), parser.getErrorMessage(), paintModel);
+	}
+
+	@Benchmark
+	public PaintModel parseParallel() throws IOException {
+		PaintModel paintModel = new PaintModel();
+		PaintFileParser parser = new PaintFileParser();
+		return check(parser.parseParallel(this.textFile, paintModel), parser.getErrorMessage(), paintModel);
+	}
+
+	@Benchmark
+	public PaintModel parseBinary() throws IOException {
+		PaintModel paintModel = new PaintModel();
+		BinaryPaintFileParser parser = new BinaryPaintFileParser();
+		return check(parser.parse(this.binaryFile, paintModel), parser.getErrorMessage(), paintModel);
+	}
+
+	private static PaintModel check(boolean parsed, String errorMessage, PaintModel paintModel) {
+		if (!parsed) {
+			throw new IllegalStateException(errorMessage);
+		}
+		return paintModel;
+	}
+}
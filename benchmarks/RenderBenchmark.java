@@ -0,0 +1,125 @@
+package ca.utoronto.utm.paint;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of drawing, through the same code the PaintPanel runs:
+ * each command's execute on the GraphicsContext of a real Canvas, the
+ * committed layer replayed from its DisplayList by executeCommitted, a
+ * whole frame of that including the Canvas rasterizing it, and rasterizing
+ * the drawing with ImageRenderer. JavaFX is started with Platform.startup,
+ * so its modules must be on the module path. The Canvas is not in a scene,
+ * so it may be drawn on from the benchmark thread; clearing all of it also
+ * empties its buffer of recorded calls. See PaintBenchmarks for how to run
+ * them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RenderBenchmark {
+	@Param({ Workloads.CIRCLES, Workloads.RECTANGLES, Workloads.SQUIGGLES, Workloads.MIXED })
+	public String kind;
+
+	@Param({ "100", "10000" })
+	public int count;
+
+	@Param({ "1000" })
+	public int points;
+
+	private static boolean started = false; // whether JavaFX is running in this JVM
+
+	private ArrayList<PaintCommand> commands;
+	private PaintModel paintModel = new PaintModel();
+	private Canvas canvas;
+	private WritableImage snapshot = new WritableImage(500, 500);
+	private BufferedImage image = new BufferedImage(500, 500, BufferedImage.TYPE_INT_RGB);
+
+	@Setup
+	public void setUp() throws InterruptedException {
+		startJavaFX();
+		this.commands = Workloads.generate(this.kind, this.count, this.points);
+		this.paintModel.load(this.commands);
+		this.canvas = new Canvas(500, 500);
+	}
+
+	/**
+	 * Start JavaFX, once in each benchmark JVM, for the benchmarks that draw on a Canvas.
+	 */
+	static synchronized void startJavaFX() throws InterruptedException {
+		if (started) {
+			return;
+		}
+		CountDownLatch running = new CountDownLatch(1);
+		Platform.startup(running::countDown);
+		running.await();
+		started = true;
+	}
+
+	@Benchmark
+	public int execute() {
+		GraphicsContext g = this.canvas.getGraphicsContext2D();
+		g.clearRect(0, 0, this.canvas.getWidth(), this.canvas.getHeight());
+		for (PaintCommand c : this.commands) {
+			c.execute(g);
+		}
+		return this.commands.size();
+	}
+
+	@Benchmark
+	public int executeCommitted() {
+		GraphicsContext g = this.canvas.getGraphicsContext2D();
+		g.clearRect(0, 0, this.canvas.getWidth(), this.canvas.getHeight());
+		return this.paintModel.executeCommitted(g, null, 1);
+	}
+
+	/**
+	 * Draw the committed layer and rasterize it, on the JavaFX thread as a
+	 * repaint would, waiting for the pixels.
+	 */
+	@Benchmark
+	public WritableImage frame() throws InterruptedException {
+		CountDownLatch drawn = new CountDownLatch(1);
+		Platform.runLater(() -> {
+			this.executeCommitted();
+			this.canvas.snapshot(null, this.snapshot);
+			drawn.countDown();
+		});
+		drawn.await();
+		return this.snapshot;
+	}
+
+	@Benchmark
+	public BufferedImage rasterize() {
+		Graphics2D g = this.image.createGraphics();
+		try {
+			new ImageRenderer(g).render(this.commands);
+		} finally {
+			g.dispose();
+		}
+		return this.image;
+	}
+}
@@ -0,0 +1,81 @@
+package ca.utoronto.utm.paint;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javafx.scene.paint.Color;
+
+/**
+ * JMH benchmarks of saving one long squiggle in the text format: building
+ * a String with += for every point, as SquiggleCommand.saveIntoFile used
+ * to, against streaming it with SaveVisitor. Both write into a Writer that
+ * discards the text, so only building it is measured, and the GC profiler
+ * gives the bytes each allocates. Setup checks both build the same text.
+ * See PaintBenchmarks for how to run them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SaveBenchmark {
+	@Param({ "1000", "10000", "50000" })
+	public int points;
+
+	private SquiggleCommand squiggle;
+	private Writer discard = Writer.nullWriter();
+
+	@Setup
+	public void setUp() {
+		this.squiggle = (SquiggleCommand) Workloads.generate(Workloads.SQUIGGLES, 1, this.points).get(0);
+		if (!legacySaveIntoFile(this.squiggle).equals(this.squiggle.saveIntoFile())) {
+			throw new AssertionError("Streaming save differs from the legacy save at " + this.points + " points");
+		}
+	}
+
+	@Benchmark
+	public void concatenation() throws IOException {
+		this.discard.write(legacySaveIntoFile(this.squiggle));
+	}
+
+	@Benchmark
+	public void streaming() throws IOException {
+		SaveVisitor saveVisitor = new SaveVisitor(this.discard);
+		this.squiggle.accept(saveVisitor);
+		saveVisitor.flush();
+	}
+
+	/**
+	 * The text SquiggleCommand.saveIntoFile used to build.
+	 */
+	private static String legacySaveIntoFile(SquiggleCommand squiggle) {
+		Color color = squiggle.getColor();
+		int r = (int)(color.getRed() * 255);
+		int g = (int)(color.getGreen() * 255);
+		int b = (int)(color.getBlue() * 255);
+		String c = "";
+		c+="\tcolor:"+r+","+g+","+b+"\n";
+		c+="\tfilled:"+squiggle.isFill()+"\n";
+		String s = "";
+		s += "\tpoints\n";
+		for (int i = 0; i < squiggle.getPointCount(); i++) {
+			s += "\t\tpoint:(" + squiggle.getX(i) + "," + squiggle.getY(i) + ")\n";
+		}
+		s += "\tend points\n";
+		return "Squiggle\n" + c + s + "End Squiggle\n";
+	}
+}
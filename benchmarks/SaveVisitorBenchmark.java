@@ -0,0 +1,67 @@
+package ca.utoronto.utm.paint;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks of saving a drawing: SaveVisitor and BinarySaveVisitor
+ * over the whole drawing, and PaintCommand.saveIntoFile for each command.
+ * Output goes to a Writer or stream that discards it, so only encoding is
+ * measured. See PaintBenchmarks for how to run them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SaveVisitorBenchmark {
+	@Param({ Workloads.CIRCLES, Workloads.RECTANGLES, Workloads.SQUIGGLES, Workloads.MIXED })
+	public String kind;
+
+	@Param({ "100", "10000" })
+	public int count;
+
+	@Param({ "1000" })
+	public int points;
+
+	private ArrayList<PaintCommand> commands;
+
+	@Setup
+	public void setUp() {
+		this.commands = Workloads.generate(this.kind, this.count, this.points);
+	}
+
+	@Benchmark
+	public void saveText() throws IOException {
+		new SaveVisitor(Writer.nullWriter(), this.commands).save(); // save closes the Writer
+	}
+
+	@Benchmark
+	public void saveBinary() throws IOException {
+		new BinarySaveVisitor(OutputStream.nullOutputStream(), this.commands).save();
+	}
+
+	@Benchmark
+	public void saveIntoFile(Blackhole blackhole) {
+		for (PaintCommand c : this.commands) {
+			blackhole.consume(c.saveIntoFile());
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package ca.utoronto.utm.paint;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of drawing one long squiggle on a real Canvas: one
+ * strokeLine per segment, as SquiggleCommand.execute used to, against the
+ * single strokePolyline it uses now. Each draws on the JavaFX thread and
+ * waits for the Canvas to rasterize the recorded calls, as
+ * RenderBenchmark.frame does. See PaintBenchmarks for how to run them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SquiggleRenderBenchmark {
+	@Param({ "10000", "100000", "1000000" })
+	public int points;
+
+	private SquiggleCommand squiggle;
+	private Canvas canvas;
+	private WritableImage snapshot = new WritableImage(500, 500);
+
+	@Setup
+	public void setUp() throws InterruptedException {
+		RenderBenchmark.startJavaFX();
+		this.squiggle = (SquiggleCommand) Workloads.generate(Workloads.SQUIGGLES, 1, this.points).get(0);
+		this.canvas = new Canvas(500, 500);
+	}
+
+	/**
+	 * The per segment drawing SquiggleCommand.execute used to do.
+	 */
+	@Benchmark
+	public WritableImage strokeLines() throws InterruptedException {
+		SquiggleCommand squiggle = this.squiggle;
+		return this.frame(g -> {
+			g.setStroke(squiggle.getColor());
+			for (int i = 0; i < squiggle.getPointCount() - 1; i++) {
+				g.strokeLine(squiggle.getX(i), squiggle.getY(i), squiggle.getX(i + 1), squiggle.getY(i + 1));
+			}
+		});
+	}
+
+	@Benchmark
+	public WritableImage strokePolyline() throws InterruptedException {
+		return this.frame(this.squiggle::execute);
+	}
+
+	/**
+	 * Clear the Canvas, draw on it with draw and rasterize it, on the
+	 * JavaFX thread, waiting for the pixels.
+	 */
+	private WritableImage frame(Consumer<GraphicsContext> draw) throws InterruptedException {
+		CountDownLatch drawn = new CountDownLatch(1);
+		Platform.runLater(() -> {
+			GraphicsContext g = this.canvas.getGraphicsContext2D();
+			g.clearRect(0, 0, this.canvas.getWidth(), this.canvas.getHeight()); // also empties its buffer of recorded calls
+			draw.accept(g);
+			this.canvas.snapshot(null, this.snapshot);
+			drawn.countDown();
+		});
+		drawn.await();
+		return this.snapshot;
+	}
+}
@@ -0,0 +1,118 @@
+package ca.utoronto.utm.paint;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of exporting a large random drawing at high resolution:
+ * with a single ImageRenderer over the whole image, or with a TileRenderer
+ * on a pool of 1, 2, 4 or 8 threads. Setup checks the tiled image matches
+ * the single one within anti-aliasing tolerance. See PaintBenchmarks for
+ * how to run it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class TileRenderBenchmark {
+	private static final int TOLERANCE = 48; // most a color channel of an edge pixel may differ
+
+	@Param({ "4000" })
+	public int size; // pixels along each side of the image
+
+	@Param({ "0", "1", "2", "4", "8" })
+	public int threads; // in the TileRenderer's pool, or 0 for a single ImageRenderer
+
+	private ArrayList<PaintCommand> commands;
+	private ForkJoinPool pool;
+	private TileRenderer renderer;
+
+	@Setup
+	public void setUp() {
+		this.commands = randomDrawing(new Random(17));
+		if (this.threads > 0) {
+			this.pool = new ForkJoinPool(this.threads);
+			this.renderer = new TileRenderer(this.pool, TileRenderer.DEFAULT_TILE_SIZE);
+			BufferedImage expected = ImageRenderer.render(this.commands, ImageRenderer.CANVAS, this.size, this.size);
+			int difference = maxDifference(expected, this.render());
+			if (difference > TOLERANCE) {
+				throw new AssertionError("A pixel differs by " + difference + " from the single renderer");
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (this.pool != null) {
+			this.pool.shutdown();
+		}
+	}
+
+	@Benchmark
+	public BufferedImage render() {
+		if (this.renderer == null) {
+			return ImageRenderer.render(this.commands, ImageRenderer.CANVAS, this.size, this.size);
+		}
+		return this.renderer.render(this.commands, ImageRenderer.CANVAS, this.size, this.size);
+	}
+
+	/**
+	 * @return the largest difference between a color channel of a pixel in a and in b
+	 */
+	private static int maxDifference(BufferedImage a, BufferedImage b) {
+		int difference = 0;
+		for (int y = 0; y < a.getHeight(); y++) {
+			for (int x = 0; x < a.getWidth(); x++) {
+				int p = a.getRGB(x, y), q = b.getRGB(x, y);
+				for (int shift = 0; shift < 24; shift += 8) {
+					difference = Math.max(difference, Math.abs((p >> shift & 255) - (q >> shift & 255)));
+				}
+			}
+		}
+		return difference;
+	}
+
+	/**
+	 * Circles and rectangles of all sizes, filled and outlined, and long squiggles.
+	 */
+	private static ArrayList<PaintCommand> randomDrawing(Random random) {
+		ArrayList<PaintCommand> commands = new ArrayList<PaintCommand>();
+		for (int i = 0; i < 20000; i++) {
+			Point p = new Point(random.nextInt(500), random.nextInt(500));
+			if (random.nextBoolean()) {
+				commands.add(new CircleCommand(p, random.nextInt(random.nextInt(100) + 1)));
+			} else {
+				commands.add(new RectangleCommand(p, new Point(p.x + random.nextInt(80) - 40, p.y + random.nextInt(80) - 40)));
+			}
+			if (i % 100 == 0) {
+				SquiggleCommand squiggle = new SquiggleCommand();
+				int x = random.nextInt(500), y = random.nextInt(500);
+				for (int j = 0; j < 5000; j++) {
+					x = Math.max(0, Math.min(499, x + random.nextInt(9) - 4));
+					y = Math.max(0, Math.min(499, y + random.nextInt(9) - 4));
+					squiggle.add(x, y);
+				}
+				commands.add(squiggle);
+			}
+		}
+		return commands;
+	}
+}
@@ -0,0 +1,109 @@
+package ca.utoronto.utm.paint;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Random;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Generates the drawings the benchmarks run on. Drawings are random but
+ * the same for the same arguments, so runs can be compared.
+ *
+ * circles     count circles
+ * rectangles  count rectangles
+ * squiggles   count squiggles of points points each
+ * mixed       count shapes, a third of each kind, the squiggles of points points
+ */
+class Workloads {
+	static final String CIRCLES = "circles";
+	static final String RECTANGLES = "rectangles";
+	static final String SQUIGGLES = "squiggles";
+	static final String MIXED = "mixed";
+
+	private static final int SIZE = 500; // shapes are drawn on the canvas
+
+	/**
+	 * @param kind one of CIRCLES, RECTANGLES, SQUIGGLES or MIXED
+	 * @param count the number of shapes
+	 * @param points the number of points in each squiggle
+	 * @return the commands of the drawing, in order
+	 */
+	static ArrayList<PaintCommand> generate(String kind, int count, int points) {
+		Random random = new Random(count * 31L + points);
+		ArrayList<PaintCommand> commands = new ArrayList<PaintCommand>(count);
+		for (int i = 0; i < count; i++) {
+			String shape = kind.equals(MIXED) ? new String[] { CIRCLES, RECTANGLES, SQUIGGLES }[i % 3] : kind;
+			PaintCommand command;
+			if (shape.equals(CIRCLES)) {
+				command = new CircleCommand(randomPoint(random), random.nextInt(SIZE / 4));
+			} else if (shape.equals(RECTANGLES)) {
+				command = new RectangleCommand(randomPoint(random), randomPoint(random));
+			} else if (shape.equals(SQUIGGLES)) {
+				command = randomWalk(random, points);
+			} else {
+				throw new IllegalArgumentException("Unknown workload " + kind);
+			}
+			// The commands pick a random color themselves; make it repeatable
+			command.setColor(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+			command.setFill(random.nextBoolean());
+			commands.add(command);
+		}
+		return commands;
+	}
+
+	/**
+	 * @return commands in the text save format
+	 */
+	static String toText(ArrayList<PaintCommand> commands) {
+		StringWriter s = new StringWriter();
+		try {
+			new SaveVisitor(s, commands).save();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // a StringWriter does not throw
+		}
+		return s.toString();
+	}
+
+	/**
+	 * Save commands to a new temporary file, deleted when the JVM exits.
+	 * @param binary whether to use the binary format rather than the text format
+	 * @return the file
+	 */
+	static File toFile(ArrayList<PaintCommand> commands, boolean binary) throws IOException {
+		File file = File.createTempFile("workload", binary ? BinaryPaintFormat.EXTENSION : ".txt");
+		file.deleteOnExit();
+		if (binary) {
+			try (OutputStream out = new FileOutputStream(file)) {
+				new BinarySaveVisitor(out, commands).save();
+			}
+		} else {
+			try (Writer out = new FileWriter(file)) {
+				new SaveVisitor(out, commands).save();
+			}
+		}
+		return file;
+	}
+
+	private static Point randomPoint(Random random) {
+		return new Point(random.nextInt(SIZE), random.nextInt(SIZE));
+	}
+
+	private static SquiggleCommand randomWalk(Random random, int points) {
+		SquiggleCommand squiggle = new SquiggleCommand();
+		int x = random.nextInt(SIZE), y = random.nextInt(SIZE);
+		for (int i = 0; i < points; i++) {
+			x = Math.max(0, Math.min(SIZE - 1, x + random.nextInt(5) - 2));
+			y = Math.max(0, Math.min(SIZE - 1, y + random.nextInt(5) - 2));
+			squiggle.add(x, y);
+		}
+		return squiggle;
+	}
+}